@@ -25,7 +25,7 @@ import com.blankj.utilcode.util.Utils;
  * SiYuan Application.
  *
  * @author <a href="https://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, Feb 23, 2022
+ * @version 1.0.4.0, Oct 17, 2026
  * @since 1.0.0
  */
 public class App extends Application {
@@ -34,5 +34,16 @@ public class App extends Application {
     public void onCreate() {
         super.onCreate();
         Utils.init(this);
+
+        AppEnvironment.init(this);
+        // 在后台获取默认 UA，预先加载 WebView 内核，缩短主界面创建 WebView 的耗时
+        AppEnvironment.webView();
+    }
+
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+        // 进程可能随后被回收，尽快写出积压的日志
+        MobileLog.requestFlush();
     }
 }
@@ -0,0 +1,231 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.webkit.WebSettings;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 进程级运行环境快照.
+ * <p>
+ * 渠道、调试标记、外观和工作空间目录、语言在应用创建时解析一次，之后不再变化。
+ * 启动路径上不再重复通过 {@code PackageManager} 跨进程读取应用信息，运行时配置也只需要在这里查看。
+ * WebView 版本和 UA 需要加载 WebView 内核，单独在后台线程上解析，见 {@link #webView()}。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class AppEnvironment {
+
+    private static volatile AppEnvironment instance;
+    private static CompletableFuture<WebViewInfo> webViewInfo;
+
+    /**
+     * WebView 信息.
+     */
+    static final class WebViewInfo {
+
+        /**
+         * WebView（Chromium）主版本号，解析失败时为空字符串.
+         */
+        final String version;
+
+        /**
+         * WebView 默认 UA，获取失败时为空字符串.
+         */
+        final String userAgent;
+
+        private WebViewInfo(final String userAgent) {
+            this.userAgent = userAgent;
+            this.version = parseChromeMajorVersion(userAgent);
+        }
+    }
+
+    private final Context context;
+
+    /**
+     * 渠道包标识，来自清单元数据 CHANNEL.
+     */
+    final String channel;
+
+    /**
+     * 是否为调试包并且处于可调试模式.
+     */
+    final boolean debug;
+
+    /**
+     * 外观根目录 files/app.
+     */
+    final File appDir;
+
+    /**
+     * 工作空间根目录，外部存储中的应用目录.
+     */
+    final File workspaceBaseDir;
+
+    /**
+     * 内核使用的语言代码，如 zh-CN、en.
+     */
+    final String language;
+
+    private AppEnvironment(final Context context) {
+        this.context = context;
+        channel = getChannel(context.getPackageManager());
+        debug = isDebugPackageAndMode(context);
+        appDir = new File(context.getFilesDir(), "app");
+        workspaceBaseDir = context.getExternalFilesDir(null);
+        language = Utils.getLanguage();
+    }
+
+    /**
+     * 在应用创建时调用，解析运行环境.
+     */
+    static synchronized void init(final Context context) {
+        if (null != instance) {
+            return;
+        }
+
+        final AppEnvironment env = new AppEnvironment(context.getApplicationContext());
+        // 调试包记录调试级别事件
+        EventLog.setLevel(env.debug ? EventLog.DEBUG : EventLog.INFO);
+        Utils.logInfo("boot", "App environment [" + env + "]");
+        instance = env;
+    }
+
+    /**
+     * 获取运行环境快照.
+     */
+    static AppEnvironment get() {
+        final AppEnvironment ret = instance;
+        if (null == ret) {
+            throw new IllegalStateException("app environment is not initialized");
+        }
+        return ret;
+    }
+
+    /**
+     * 获取 WebView 信息，首次调用时在后台线程解析.
+     * <p>
+     * 不能在主线程上等待结果：在其他线程上获取默认 UA 时，WebView 内核会把初始化投递到主线程执行并等待完成。
+     * </p>
+     */
+    static CompletableFuture<WebViewInfo> webView() {
+        final AppEnvironment env = get();
+        final CompletableFuture<WebViewInfo> future;
+        synchronized (AppEnvironment.class) {
+            if (null != webViewInfo) {
+                return webViewInfo;
+            }
+            future = new CompletableFuture<>();
+            webViewInfo = future;
+        }
+
+        new Thread(() -> {
+            String ua = "";
+            try {
+                ua = WebSettings.getDefaultUserAgent(env.context);
+            } catch (final Throwable e) {
+                Utils.logError("boot", "get default user agent failed", e);
+            }
+            final WebViewInfo info = new WebViewInfo(ua);
+            Utils.logInfo("boot", "WebView [" + info.version + "], userAgent [" + info.userAgent + "]");
+            future.complete(info);
+        }, "WebViewInfo").start();
+        return future;
+    }
+
+    boolean isHuaweiChannel() {
+        return "huawei".equals(channel);
+    }
+
+    /**
+     * 传给内核的设备描述，会等待 WebView 信息，不能在主线程上调用.
+     */
+    String deviceInfo() {
+        final WebViewInfo webView = webView().join();
+        return Build.VERSION.RELEASE +
+                "/SDK " + Build.VERSION.SDK_INT +
+                "/WebView " + webView.version +
+                "/Manufacturer " + Build.MANUFACTURER +
+                "/Brand " + Build.BRAND +
+                "/UA " + webView.userAgent;
+    }
+
+    @Override
+    public String toString() {
+        return "channel=" + channel + ", debug=" + debug + ", appDir=" + appDir + ", workspaceBaseDir=" + workspaceBaseDir
+                + ", language=" + language;
+    }
+
+    private static String getChannel(final PackageManager pm) {
+        // Privacy policy solicitation will no longer pop up when Android starts for the first time
+        // https://github.com/siyuan-note/siyuan/issues/10348
+        ApplicationInfo applicationInfo;
+        try {
+            applicationInfo = pm.getApplicationInfo(BuildConfig.APPLICATION_ID, PackageManager.GET_META_DATA);
+        } catch (PackageManager.NameNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+
+        // 从配置清单获取 CHANNEL 的值，用于判断是哪个渠道包
+        return applicationInfo.metaData.getString("CHANNEL");
+    }
+
+    /**
+     * Checks if the current package name contains ".debug" and if debug mode is enabled.
+     *
+     * @param context The Android context used to retrieve the package information.
+     * @return true if the package name contains ".debug" and debug mode is enabled, false otherwise.
+     */
+    private static boolean isDebugPackageAndMode(Context context) {
+        PackageManager packageManager = context.getPackageManager();
+        ApplicationInfo appInfo = null;
+        try {
+            appInfo = packageManager.getApplicationInfo(context.getPackageName(), 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            e.printStackTrace();
+        }
+
+        // Check if the package name contains ".debug"
+        boolean isDebugPackage = context.getPackageName() != null && context.getPackageName().contains(".debug");
+        boolean isDebugMode = appInfo != null && (appInfo.flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        return isDebugPackage && isDebugMode;
+    }
+
+    private static String parseChromeMajorVersion(final String ua) {
+        final int start = ua.indexOf("Chrome/");
+        if (0 > start) {
+            return "";
+        }
+
+        final int from = start + "Chrome/".length();
+        int end = from;
+        while (end < ua.length() && Character.isDigit(ua.charAt(end))) {
+            end++;
+        }
+        return ua.substring(from, end);
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.content.res.AssetManager;
+import android.system.Os;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 外观资源增量解压.
+ * <p>
+ * 构建时会为 app.zip 生成内容清单 app.zip.manifest（每行 CRC32、大小和路径），启动时和已安装目录的清单比对：
+ * 未变化的条目直接硬链接到暂存目录，只解压变化的条目，已删除的条目不再带入，最后整体替换安装目录。
+ * 资源包直接从 APK 中读取（见 {@link AssetZip}），变化的条目在有界线程池上并发解压。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class AppearanceExtractor {
+
+    static final String ASSET_ZIP = "app.zip";
+    static final String ASSET_MANIFEST = "app.zip.manifest";
+
+    private static final String INSTALLED_MANIFEST = "MANIFEST";
+    private static final String STAGING_DIR = "app.staging";
+    private static final String TRASH_DIR = "app.trash";
+    private static final String VERSION_HEADER = "# version ";
+    private static final int MAX_WORKERS = 4;
+
+    private final AssetManager assets;
+    private final File appDir;
+    private final File targetDir;
+
+    /**
+     * @param assets APK 资源
+     * @param appDir 外观根目录 files/app，资源解压到其下的 app 目录
+     */
+    AppearanceExtractor(final AssetManager assets, final File appDir) {
+        this.assets = assets;
+        this.appDir = appDir;
+        this.targetDir = new File(appDir, "app");
+    }
+
+    /**
+     * 比较打包清单和已安装清单的哈希判断是否需要解压。打包时未生成清单则退回比较版本号。
+     */
+    boolean needExtract() {
+        final byte[] installed = readInstalledManifest();
+        if (null == installed) {
+            return true;
+        }
+
+        final byte[] bundled = readBundledManifest();
+        if (null == bundled) {
+            return !(VERSION_HEADER + Utils.versionCode).equals(firstLine(installed));
+        }
+        return !sha256(bundled).equals(sha256(installed));
+    }
+
+    /**
+     * 将 app.zip 增量解压到 files/app/app.
+     *
+     * @param full     是否忽略已安装清单全量解压
+     * @param progress 每解压完一个条目回调一次，可能在工作线程上调用
+     */
+    void extract(final boolean full, final Progress progress) throws IOException {
+        final long start = System.currentTimeMillis();
+        final File staging = new File(appDir, STAGING_DIR);
+        FileUtils.deleteQuietly(staging);
+        if (!staging.mkdirs()) {
+            throw new IOException("create staging dir [" + staging + "] failed");
+        }
+
+        // 直接从 APK 中按偏移读取 app.zip，资源被压缩存放时退回流式读取
+        try (final AssetZip zip = AssetZip.open(assets, ASSET_ZIP)) {
+            byte[] manifestBytes = readBundledManifest();
+            if (null == manifestBytes && null != zip) {
+                manifestBytes = buildManifest(zip.entries().values());
+            }
+            final Map<String, Entry> installed = full ? new LinkedHashMap<>() : parseManifest(readInstalledManifest());
+
+            final Map<String, Entry> bundled;
+            final List<String> changed = new ArrayList<>();
+            int linked = 0;
+            if (null == manifestBytes) {
+                manifestBytes = extractStream(staging, null, progress);
+                bundled = parseManifest(manifestBytes);
+                changed.addAll(bundled.keySet());
+            } else {
+                bundled = parseManifest(manifestBytes);
+                for (final Map.Entry<String, Entry> e : bundled.entrySet()) {
+                    final String path = e.getKey();
+                    final Entry entry = e.getValue();
+                    final File dest = resolve(staging, path);
+                    if (entry.isDir()) {
+                        dest.mkdirs();
+                        continue;
+                    }
+
+                    final File current = resolve(targetDir, path);
+                    if (entry.equals(installed.get(path)) && current.isFile() && current.length() == entry.size
+                            && link(current, dest)) {
+                        linked++;
+                        continue;
+                    }
+                    changed.add(path);
+                }
+
+                if (null != zip) {
+                    extractParallel(zip, staging, changed, progress);
+                } else {
+                    extractStream(staging, new HashSet<>(changed), progress);
+                }
+            }
+
+            swap(staging, manifestBytes);
+            final int removed = countRemoved(installed, bundled);
+            Utils.logInfo("boot", "Extracted appearance [linked=" + linked + ", written=" + changed.size()
+                    + ", removed=" + removed + ", parallel=" + (null != zip) + "] in ["
+                    + (System.currentTimeMillis() - start) + "] ms");
+        } catch (final IOException e) {
+            FileUtils.deleteQuietly(staging);
+            throw e;
+        }
+    }
+
+    /**
+     * 在有界线程池上并发解压，大条目优先提交以均衡各线程负载.
+     */
+    private static void extractParallel(final AssetZip zip, final File staging, final List<String> paths,
+                                        final Progress progress) throws IOException {
+        final List<AssetZip.Entry> entries = new ArrayList<>(paths.size());
+        for (final String path : paths) {
+            final AssetZip.Entry entry = zip.entries().get(path);
+            if (null == entry) {
+                throw new FileNotFoundException("entry [" + path + "] is not found in [" + ASSET_ZIP + "]");
+            }
+            entries.add(entry);
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(b.compressedSize, a.compressedSize));
+
+        final int total = entries.size();
+        final int workers = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+        final ExecutorService pool = Executors.newFixedThreadPool(workers, r -> new Thread(r, "AppearanceExtractor"));
+        final AtomicInteger done = new AtomicInteger();
+        final List<Future<?>> futures = new ArrayList<>(total);
+        try {
+            for (final AssetZip.Entry entry : entries) {
+                final File dest = resolve(staging, entry.name);
+                futures.add(pool.submit(() -> {
+                    zip.extract(entry, dest);
+                    progress.onEntry(entry.name, done.incrementAndGet(), total);
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("extract appearance failed", cause);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("extract appearance interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 顺序读取 app.zip 解压指定条目，{@code wanted} 为空时解压全部并返回按实际条目生成的清单.
+     */
+    private byte[] extractStream(final File staging, final Set<String> wanted, final Progress progress) throws IOException {
+        final StringBuilder manifest = new StringBuilder(VERSION_HEADER).append(Utils.versionCode).append('\n');
+        final int total = null == wanted ? -1 : wanted.size();
+        int done = 0;
+        try (final ZipInputStream zis = new ZipInputStream(new BufferedInputStream(assets.open(ASSET_ZIP), 64 * 1024))) {
+            ZipEntry entry;
+            while (null != (entry = zis.getNextEntry())) {
+                final String path = entry.getName();
+                final File dest = resolve(staging, path);
+                if (entry.isDirectory()) {
+                    dest.mkdirs();
+                    appendManifestLine(manifest, path, 0, 0);
+                    continue;
+                }
+                if (null != wanted && !wanted.contains(path)) {
+                    continue;
+                }
+
+                try (final OutputStream out = FileUtils.openOutputStream(dest)) {
+                    IOUtils.copy(zis, out);
+                }
+                // 读完条目后 CRC 和大小才可用
+                appendManifestLine(manifest, path, entry.getCrc(), entry.getSize());
+                progress.onEntry(path, ++done, total);
+            }
+        }
+        return manifest.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 用暂存目录替换安装目录，清单最后写入，中途失败时下次启动会重新比对。
+     */
+    private void swap(final File staging, final byte[] manifestBytes) throws IOException {
+        final File trash = new File(appDir, TRASH_DIR);
+        FileUtils.deleteQuietly(trash);
+        final File manifest = new File(appDir, INSTALLED_MANIFEST);
+        FileUtils.deleteQuietly(manifest);
+        if (targetDir.exists() && !targetDir.renameTo(trash)) {
+            throw new IOException("move [" + targetDir + "] to [" + trash + "] failed");
+        }
+        if (!staging.renameTo(targetDir)) {
+            trash.renameTo(targetDir);
+            throw new IOException("move [" + staging + "] to [" + targetDir + "] failed");
+        }
+
+        final File tmp = new File(appDir, INSTALLED_MANIFEST + ".tmp");
+        FileUtils.writeByteArrayToFile(tmp, manifestBytes);
+        if (!tmp.renameTo(manifest)) {
+            throw new IOException("write manifest [" + manifest + "] failed");
+        }
+        FileUtils.deleteQuietly(trash);
+    }
+
+    private static boolean link(final File src, final File dest) {
+        try {
+            dest.getParentFile().mkdirs();
+            Os.link(src.getAbsolutePath(), dest.getAbsolutePath());
+            return true;
+        } catch (final Exception e) {
+            try {
+                FileUtils.copyFile(src, dest);
+                return true;
+            } catch (final IOException ignored) {
+                return false;
+            }
+        }
+    }
+
+    private static File resolve(final File root, final String path) throws IOException {
+        if (path.startsWith("/") || path.equals("..") || path.startsWith("../") || path.contains("/../")
+                || path.endsWith("/..")) {
+            throw new IOException("illegal entry [" + path + "]");
+        }
+        return new File(root, path);
+    }
+
+    private static int countRemoved(final Map<String, Entry> installed, final Map<String, Entry> bundled) {
+        int ret = 0;
+        for (final String path : installed.keySet()) {
+            if (!bundled.containsKey(path)) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    private byte[] readBundledManifest() {
+        try (final InputStream in = assets.open(ASSET_MANIFEST)) {
+            return IOUtils.toByteArray(in);
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    private byte[] readInstalledManifest() {
+        final File manifest = new File(appDir, INSTALLED_MANIFEST);
+        if (!manifest.isFile()) {
+            return null;
+        }
+        try {
+            return FileUtils.readFileToByteArray(manifest);
+        } catch (final IOException e) {
+            Utils.logError("boot", "read manifest [" + manifest + "] failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * 打包时未生成清单，按中央目录补一份，并写入版本号供下次启动比较。
+     */
+    private static byte[] buildManifest(final Collection<AssetZip.Entry> entries) {
+        final StringBuilder buf = new StringBuilder(VERSION_HEADER).append(Utils.versionCode).append('\n');
+        for (final AssetZip.Entry entry : entries) {
+            final boolean dir = entry.isDirectory();
+            appendManifestLine(buf, entry.name, dir ? 0 : entry.crc, dir ? 0 : entry.size);
+        }
+        return buf.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendManifestLine(final StringBuilder buf, final String path, final long crc, final long size) {
+        buf.append(Long.toHexString(crc)).append('\t').append(size).append('\t').append(path).append('\n');
+    }
+
+    private static Map<String, Entry> parseManifest(final byte[] manifest) throws IOException {
+        final Map<String, Entry> ret = new LinkedHashMap<>();
+        if (null == manifest) {
+            return ret;
+        }
+
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(manifest), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final String[] parts = line.split("\t", 3);
+                if (3 != parts.length) {
+                    throw new IOException("invalid manifest line [" + line + "]");
+                }
+                ret.put(parts[2], new Entry(Long.parseLong(parts[0], 16), Long.parseLong(parts[1]), parts[2].endsWith("/")));
+            }
+        } catch (final NumberFormatException e) {
+            throw new IOException("invalid manifest", e);
+        }
+        return ret;
+    }
+
+    private static String firstLine(final byte[] manifest) {
+        final String text = new String(manifest, StandardCharsets.UTF_8);
+        final int idx = text.indexOf('\n');
+        return -1 == idx ? text : text.substring(0, idx);
+    }
+
+    static String sha256(final byte[] data) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            final StringBuilder ret = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                ret.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return ret.toString();
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 解压进度回调.
+     */
+    interface Progress {
+
+        /**
+         * @param path  刚解压完的条目
+         * @param done  已解压条目数
+         * @param total 需要解压的条目总数，流式全量解压时未知为 -1
+         */
+        void onEntry(String path, int done, int total);
+    }
+
+    private static final class Entry {
+        private final long crc;
+        private final long size;
+        private final boolean dir;
+
+        private Entry(final long crc, final long size, final boolean dir) {
+            this.crc = crc;
+            this.size = size;
+            this.dir = dir;
+        }
+
+        private boolean isDir() {
+            return dir;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final Entry e = (Entry) o;
+            return crc == e.crc && size == e.size && dir == e.dir;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(crc, size, dir);
+        }
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.os.Build;
+import android.webkit.WebResourceResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 资源图片缩略图.
+ * <p>
+ * 请求 /assets/ 图片时带上 thumb=宽度 参数，由原生代码解码缩小后以 WebP 返回，WebView 不再解码整张相机照片。
+ * 宽度向上取到固定档位，解码时按目标尺寸降采样（Android 9 及以上使用 ImageDecoder，否则使用 inSampleSize），
+ * 解码在有界线程池上进行，同时解码的图片数有上限。结果按原图内容哈希和档位缓存在磁盘上，总大小超过上限时删除最久未用的缩略图。
+ * 原图不比目标小、格式不支持、是动图（APNG 和动态 WebP）或者生成失败时返回 {@code null}，由调用方返回原图。
+ * </p>
+ * <p>
+ * 请求线程是 WebView 的加载线程，只按原图路径、大小和修改时间查内存中的记录，命中时直接返回缩略图文件；
+ * 未命中时计算哈希和生成都提交到线程池，请求线程最多等待几十毫秒，超时先返回原图，之后的请求命中记录。
+ * 不需要缩小或者解码失败的原图也按路径、大小、修改时间和档位记住，不再重复尝试。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class AssetThumbnails {
+
+    static final String PARAM = "thumb";
+    private static final int[] WIDTHS = {128, 256, 512, 1024, 2048};
+    private static final List<String> FORMATS = Arrays.asList(
+            "image/jpeg", "image/png", "image/webp", "image/bmp", "image/heic", "image/heif");
+    private static final int THREADS = 2;
+    private static final int QUEUE = 32;
+    private static final long WAIT = 50;
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+    private static final int QUALITY = 80;
+    private static final int MAX_THUMBS = 1024;
+    private static final int MAX_SKIPPED = 1024;
+
+    private static volatile File dir;
+    // 缓存目录的大致总大小，超过上限时再遍历目录清理
+    private static long totalBytes;
+    private static final ThreadPoolExecutor executor;
+    private static final Map<String, Future<File>> pending = new ConcurrentHashMap<>();
+    // 原图路径、大小、修改时间和档位 -> 缩略图文件，请求线程上不需要读原图
+    private static final Map<String, File> thumbs = Collections.synchronizedMap(
+            new LinkedHashMap<String, File>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, File> eldest) {
+                    return MAX_THUMBS < size();
+                }
+            });
+    // 不需要或者无法生成缩略图的原图路径、大小、修改时间和档位
+    private static final Map<String, Boolean> skipped = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                    return MAX_SKIPPED < size();
+                }
+            });
+
+    static {
+        final AtomicInteger threadNum = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE),
+                r -> new Thread(r, "Thumbnail-" + threadNum.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private AssetThumbnails() {
+    }
+
+    /**
+     * 设置缓存目录并清理超出上限的缩略图，在启动阶段的后台线程上调用.
+     */
+    static void open(final File cacheDir) {
+        cacheDir.mkdirs();
+        final File[] tmps = cacheDir.listFiles((d, name) -> name.endsWith(".tmp"));
+        if (null != tmps) {
+            for (final File tmp : tmps) {
+                tmp.delete();
+            }
+        }
+        dir = cacheDir;
+        trim();
+    }
+
+    /**
+     * 返回原图的缩略图响应，无法生成或者不需要缩小时返回 {@code null}.
+     *
+     * @param hint 请求的显示宽度（像素）
+     */
+    static WebResourceResponse serve(final File image, final String mimeType, final String hint) {
+        final File cacheDir = dir;
+        if (null == cacheDir || !FORMATS.contains(mimeType)) {
+            return null;
+        }
+
+        final int width = width(hint);
+        if (0 >= width) {
+            return null;
+        }
+
+        try {
+            final String key = image.getPath() + ":" + image.length() + ":" + image.lastModified() + "-" + width;
+            if (skipped.containsKey(key)) {
+                return null;
+            }
+            File ret = thumbs.get(key);
+            if (null != ret && ret.isFile()) {
+                ret.setLastModified(System.currentTimeMillis());
+            } else {
+                // 缩略图可能已经被清理，重新生成
+                ret = generate(key, cacheDir, image, mimeType, width);
+            }
+            if (null == ret) {
+                return null;
+            }
+
+            final Map<String, String> headers = new HashMap<>();
+            headers.put("Content-Length", String.valueOf(ret.length()));
+            headers.put("Access-Control-Allow-Origin", "*");
+            headers.put("Cache-Control", "no-cache");
+            return new WebResourceResponse("image/webp", null, 200, "OK", headers, new FileInputStream(ret));
+        } catch (final Exception e) {
+            Utils.logError("webview", "serve thumbnail of [" + image + "] failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * 在线程池上计算原图哈希并生成缩略图，短暂等待结果，同一缩略图同时只生成一次.
+     */
+    private static File generate(final String key, final File cacheDir, final File image, final String mimeType,
+                                 final int width) throws Exception {
+        final FutureTask<File> task = new FutureTask<>(() -> {
+            try {
+                final File thumb = new File(cacheDir, hash(image) + "-" + width + ".webp");
+                final File ret;
+                if (thumb.isFile()) {
+                    // 内容相同的图片已经生成过
+                    thumb.setLastModified(System.currentTimeMillis());
+                    ret = thumb;
+                } else {
+                    ret = create(image, mimeType, thumb, width);
+                }
+                if (null == ret) {
+                    skipped.put(key, Boolean.TRUE);
+                } else {
+                    thumbs.put(key, ret);
+                }
+                return ret;
+            } catch (final Exception | OutOfMemoryError e) {
+                // 解码失败的图片不再重复尝试
+                Utils.logError("webview", "create thumbnail of [" + image + "] failed", e);
+                skipped.put(key, Boolean.TRUE);
+                return null;
+            } finally {
+                pending.remove(key);
+            }
+        });
+        Future<File> future = pending.putIfAbsent(key, task);
+        if (null == future) {
+            future = task;
+            try {
+                executor.execute(task);
+            } catch (final RejectedExecutionException e) {
+                pending.remove(key);
+                Utils.logInfo("webview", "Thumbnail queue is full, serve original image [" + image + "]");
+                return null;
+            }
+        }
+        try {
+            return future.get(WAIT, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            // 不阻塞 WebView 的加载线程，缩略图在后台继续生成
+            return null;
+        }
+    }
+
+    private static File create(final File image, final String mimeType, final File thumb, final int width) throws IOException {
+        if (isAnimated(image, mimeType)) {
+            // 缩略图只有第一帧
+            return null;
+        }
+
+        final Bitmap bitmap = decode(image, width);
+        if (null == bitmap) {
+            return null;
+        }
+
+        final File tmp = new File(thumb.getPath() + ".tmp");
+        try (final OutputStream out = new FileOutputStream(tmp)) {
+            final Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+            if (!bitmap.compress(format, QUALITY, out)) {
+                throw new IOException("encode thumbnail failed");
+            }
+        } catch (final IOException e) {
+            tmp.delete();
+            throw e;
+        } finally {
+            bitmap.recycle();
+        }
+        if (!tmp.renameTo(thumb)) {
+            tmp.delete();
+            throw new IOException("rename [" + tmp + "] to [" + thumb + "] failed");
+        }
+        synchronized (AssetThumbnails.class) {
+            totalBytes += thumb.length();
+            if (MAX_BYTES < totalBytes) {
+                trim();
+            }
+        }
+        return thumb;
+    }
+
+    /**
+     * 按目标宽度解码并按 EXIF 方向旋转，原图不比目标宽时返回 {@code null}.
+     */
+    private static Bitmap decode(final File image, final int width) throws IOException {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(image.getPath(), options);
+        final int orientation = orientation(image);
+        final boolean transposed = ExifInterface.ORIENTATION_ROTATE_90 == orientation
+                || ExifInterface.ORIENTATION_ROTATE_270 == orientation;
+        // 显示时的宽高
+        final int w = transposed ? options.outHeight : options.outWidth;
+        final int h = transposed ? options.outWidth : options.outHeight;
+        if (0 >= w || 0 >= h || w <= width) {
+            return null;
+        }
+        final float scale = (float) width / w;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            // ImageDecoder 会按 EXIF 方向旋转，宽高等比缩放，不需要关心是旋转前还是旋转后的尺寸
+            return ImageDecoder.decodeBitmap(ImageDecoder.createSource(image), (decoder, info, source) -> {
+                decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+                decoder.setTargetSize(Math.max(1, Math.round(info.getSize().getWidth() * scale)),
+                        Math.max(1, Math.round(info.getSize().getHeight() * scale)));
+            });
+        }
+
+        int sampleSize = 1;
+        while (w / (sampleSize * 2) >= width) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        final Bitmap sampled = BitmapFactory.decodeFile(image.getPath(), options);
+        if (null == sampled) {
+            return null;
+        }
+
+        final Matrix matrix = new Matrix();
+        final float rest = (float) width / (transposed ? sampled.getHeight() : sampled.getWidth());
+        matrix.postScale(rest, rest);
+        if (ExifInterface.ORIENTATION_ROTATE_90 == orientation) {
+            matrix.postRotate(90);
+        } else if (ExifInterface.ORIENTATION_ROTATE_180 == orientation) {
+            matrix.postRotate(180);
+        } else if (ExifInterface.ORIENTATION_ROTATE_270 == orientation) {
+            matrix.postRotate(270);
+        }
+        final Bitmap ret = Bitmap.createBitmap(sampled, 0, 0, sampled.getWidth(), sampled.getHeight(), matrix, true);
+        if (ret != sampled) {
+            sampled.recycle();
+        }
+        return ret;
+    }
+
+    /**
+     * 检查是否为 APNG（IDAT 之前有 acTL 块）或者动态 WebP（VP8X 块设置了动画标志）.
+     */
+    private static boolean isAnimated(final File image, final String mimeType) throws IOException {
+        final boolean png = "image/png".equals(mimeType);
+        if (!png && !"image/webp".equals(mimeType)) {
+            return false;
+        }
+
+        try (final RandomAccessFile raf = new RandomAccessFile(image, "r")) {
+            if (!png) {
+                final byte[] riff = new byte[21];
+                if (riff.length > raf.length()) {
+                    return false;
+                }
+                raf.readFully(riff);
+                return "RIFF".equals(ascii(riff, 0)) && "WEBP".equals(ascii(riff, 8)) && "VP8X".equals(ascii(riff, 12))
+                        && 0 != (riff[20] & 0x02);
+            }
+
+            // 跳过 8 字节的文件签名，逐块读取长度和类型
+            final byte[] header = new byte[8];
+            long pos = 8;
+            while (pos + header.length <= raf.length()) {
+                raf.seek(pos);
+                raf.readFully(header);
+                final String type = ascii(header, 4);
+                if ("acTL".equals(type)) {
+                    return true;
+                }
+                if ("IDAT".equals(type) || "IEND".equals(type)) {
+                    return false;
+                }
+                final long length = ((header[0] & 0xFFL) << 24) | ((header[1] & 0xFFL) << 16) | ((header[2] & 0xFFL) << 8)
+                        | (header[3] & 0xFFL);
+                // 长度、类型、数据和 CRC
+                pos += 12 + length;
+            }
+            return false;
+        }
+    }
+
+    private static String ascii(final byte[] data, final int offset) {
+        return new String(data, offset, 4, StandardCharsets.US_ASCII);
+    }
+
+    private static int orientation(final File image) {
+        try {
+            return new ExifInterface(image.getPath()).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+        } catch (final Exception e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * 将请求的宽度向上取到档位，减少同一张图片的缩略图数量.
+     */
+    private static int width(final String hint) {
+        final int requested;
+        try {
+            requested = Integer.parseInt(hint.trim());
+        } catch (final Exception e) {
+            return -1;
+        }
+        if (0 >= requested) {
+            return -1;
+        }
+        for (final int width : WIDTHS) {
+            if (requested <= width) {
+                return width;
+            }
+        }
+        return -1;
+    }
+
+    private static String hash(final File image) throws Exception {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (final InputStream in = new FileInputStream(image)) {
+            final byte[] buf = new byte[64 * 1024];
+            int n;
+            while (-1 != (n = in.read(buf))) {
+                digest.update(buf, 0, n);
+            }
+        }
+        final StringBuilder ret = new StringBuilder(64);
+        for (final byte b : digest.digest()) {
+            ret.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return ret.toString();
+    }
+
+    /**
+     * 总大小超过上限时删除最久未用的缩略图.
+     */
+    private static synchronized void trim() {
+        final File cacheDir = dir;
+        final File[] files = null == cacheDir ? null : cacheDir.listFiles((d, name) -> name.endsWith(".webp"));
+        if (null == files) {
+            return;
+        }
+
+        long total = 0;
+        for (final File file : files) {
+            total += file.length();
+        }
+        totalBytes = total;
+        if (MAX_BYTES >= total) {
+            return;
+        }
+
+        final List<File> sorted = new ArrayList<>(Arrays.asList(files));
+        sorted.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (final File file : sorted) {
+            if (MAX_BYTES >= total) {
+                break;
+            }
+            final long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+        totalBytes = total;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * 直接读取 APK 中未压缩存放的 zip 资源.
+ * <p>
+ * 通过 {@link AssetFileDescriptor} 定位资源在 APK 内的偏移，解析中央目录后按条目随机读取，
+ * 不需要先把整个压缩包复制到缓存目录。读取使用 {@link FileChannel} 定位读，可以多线程并发解压不同条目。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class AssetZip implements Closeable {
+
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIZE = 30;
+    private static final int MAX_COMMENT = 0xFFFF;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final AssetFileDescriptor afd;
+    private final FileInputStream input;
+    private final FileChannel channel;
+    private final long base;
+    private final long length;
+    private final Map<String, Entry> entries;
+
+    /**
+     * 打开资源，资源在 APK 中被压缩存放时无法定位偏移，返回 {@code null} 由调用方退回流式读取。
+     */
+    static AssetZip open(final AssetManager assets, final String name) {
+        final AssetFileDescriptor afd;
+        try {
+            afd = assets.openFd(name);
+        } catch (final IOException e) {
+            return null;
+        }
+
+        try {
+            return new AssetZip(afd);
+        } catch (final IOException e) {
+            Utils.logError("boot", "open asset zip [" + name + "] failed", e);
+            try {
+                afd.close();
+            } catch (final IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    private AssetZip(final AssetFileDescriptor afd) throws IOException {
+        this.afd = afd;
+        this.input = afd.createInputStream();
+        this.channel = input.getChannel();
+        this.base = afd.getStartOffset();
+        this.length = afd.getLength();
+        this.entries = readCentralDirectory();
+    }
+
+    Map<String, Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * 将条目解压到目标文件并校验 CRC32，可以在多个线程上并发调用.
+     */
+    void extract(final Entry entry, final File dest) throws IOException {
+        final ByteBuffer loc = read(entry.localHeaderOffset, LOC_SIZE);
+        if (LOC_SIG != loc.getInt(0)) {
+            throw new ZipException("invalid local header of [" + entry.name + "]");
+        }
+        long pos = entry.localHeaderOffset + LOC_SIZE + (loc.getShort(26) & 0xFFFF) + (loc.getShort(28) & 0xFFFF);
+        long remaining = entry.compressedSize;
+
+        final CRC32 crc = new CRC32();
+        final byte[] out = new byte[BUFFER_SIZE];
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        final Inflater inflater = 0 == entry.method ? null : new Inflater(true);
+        long written = 0;
+        try (final OutputStream os = FileUtils.openOutputStream(dest)) {
+            while (0 < remaining) {
+                in.clear();
+                in.limit((int) Math.min(BUFFER_SIZE, remaining));
+                final int n = channel.read(in, base + pos);
+                if (0 > n) {
+                    throw new EOFException("unexpected end of [" + entry.name + "]");
+                }
+                pos += n;
+                remaining -= n;
+
+                if (null == inflater) {
+                    os.write(in.array(), 0, n);
+                    crc.update(in.array(), 0, n);
+                    written += n;
+                    continue;
+                }
+
+                inflater.setInput(in.array(), 0, n);
+                int inflated;
+                while (0 < (inflated = inflater.inflate(out))) {
+                    os.write(out, 0, inflated);
+                    crc.update(out, 0, inflated);
+                    written += inflated;
+                }
+            }
+            if (null != inflater) {
+                // raw deflate 流末尾需要一个额外的空字节才能结束
+                inflater.setInput(new byte[1]);
+                int inflated;
+                while (0 < (inflated = inflater.inflate(out))) {
+                    os.write(out, 0, inflated);
+                    crc.update(out, 0, inflated);
+                    written += inflated;
+                }
+            }
+        } catch (final DataFormatException e) {
+            throw new ZipException("inflate [" + entry.name + "] failed: " + e.getMessage());
+        } finally {
+            if (null != inflater) {
+                inflater.end();
+            }
+        }
+
+        if (written != entry.size || crc.getValue() != entry.crc) {
+            throw new ZipException("corrupted entry [" + entry.name + "]");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            input.close();
+        } finally {
+            afd.close();
+        }
+    }
+
+    private Map<String, Entry> readCentralDirectory() throws IOException {
+        final int tailSize = (int) Math.min(length, EOCD_SIZE + MAX_COMMENT);
+        final ByteBuffer tail = read(length - tailSize, tailSize);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; 0 <= i; i--) {
+            if (EOCD_SIG == tail.getInt(i)) {
+                eocd = i;
+                break;
+            }
+        }
+        if (0 > eocd) {
+            throw new ZipException("end of central directory is not found");
+        }
+
+        final int count = tail.getShort(eocd + 10) & 0xFFFF;
+        final long cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        final long cenOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (0xFFFF == count || 0xFFFFFFFFL == cenOffset || cenOffset + cenSize > length) {
+            throw new ZipException("zip64 is not supported");
+        }
+
+        final ByteBuffer cen = read(cenOffset, (int) cenSize);
+        final Map<String, Entry> ret = new LinkedHashMap<>(count * 2);
+        int p = 0;
+        for (int i = 0; i < count; i++) {
+            if (CEN_SIG != cen.getInt(p)) {
+                throw new ZipException("invalid central directory entry at [" + p + "]");
+            }
+            final int method = cen.getShort(p + 10) & 0xFFFF;
+            final long crc = cen.getInt(p + 16) & 0xFFFFFFFFL;
+            final long compressedSize = cen.getInt(p + 20) & 0xFFFFFFFFL;
+            final long size = cen.getInt(p + 24) & 0xFFFFFFFFL;
+            final int nameLen = cen.getShort(p + 28) & 0xFFFF;
+            final int extraLen = cen.getShort(p + 30) & 0xFFFF;
+            final int commentLen = cen.getShort(p + 32) & 0xFFFF;
+            final long localHeaderOffset = cen.getInt(p + 42) & 0xFFFFFFFFL;
+            final String name = new String(cen.array(), p + CEN_SIZE, nameLen, StandardCharsets.UTF_8);
+            if (0 != method && 8 != method) {
+                throw new ZipException("unsupported compression method [" + method + "] of [" + name + "]");
+            }
+            ret.put(name, new Entry(name, method, crc, compressedSize, size, localHeaderOffset));
+            p += CEN_SIZE + nameLen + extraLen + commentLen;
+        }
+        return ret;
+    }
+
+    private ByteBuffer read(final long offset, final int size) throws IOException {
+        final ByteBuffer ret = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        long pos = base + offset;
+        while (ret.hasRemaining()) {
+            final int n = channel.read(ret, pos);
+            if (0 > n) {
+                throw new EOFException("unexpected end of asset zip");
+            }
+            pos += n;
+        }
+        return ret;
+    }
+
+    static final class Entry {
+        final String name;
+        final int method;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long localHeaderOffset;
+
+        private Entry(final String name, final int method, final long crc, final long compressedSize,
+                      final long size, final long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+}
@@ -18,9 +18,7 @@
 package org.b3log.siyuan;
 
 import android.app.AlertDialog;
-import android.content.Intent;
 import android.content.res.Configuration;
-import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -40,14 +38,12 @@ import com.blankj.utilcode.util.BarUtils;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * 引导启动.
  *
  * @author <a href="https://88250.b3log.org">Liang Ding</a>
- * @version 1.1.1.4, Jul 20, 2026
+ * @version 1.2.0.2, Oct 17, 2026
  * @since 1.0.0
  */
 public class BootActivity extends AppCompatActivity {
@@ -55,73 +51,37 @@ public class BootActivity extends AppCompatActivity {
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        Utils.logInfo("boot", "Create boot activity, process [" + android.os.Process.myPid()
-                + "], instance [" + System.identityHashCode(this) + "], task [" + getTaskId()
-                + "], saved state [" + (null != savedInstanceState) + "]");
-        setContentView(R.layout.activity_boot);
-
-        BarUtils.setNavBarVisibility(this, false);
-
-        final String channel = Utils.getChannel(this.getPackageManager());
-        final Set<String> showAgreementChannels = new HashSet<>();
-        showAgreementChannels.add("cn");
-        showAgreementChannels.add("huawei");
-        final boolean needShowAgreement = showAgreementChannels.contains(channel);
-        if (needShowAgreement && isFirstRun()) {
+        StartupTracer.begin(StartupTracer.Span.BOOT_ACTIVITY);
+        EventLog.log(EventLog.Event.BOOT_CREATE, android.os.Process.myPid(), System.identityHashCode(this), getTaskId(),
+                null != savedInstanceState ? 1 : 0);
+        if (LaunchGate.needAgreement(this)) {
+            // 只有需要展示用户协议时才加载引导界面
+            setContentView(R.layout.activity_boot);
+            BarUtils.setNavBarVisibility(this, false);
             showAgreements();
             return;
         }
 
         startMainActivity();
+        StartupTracer.end(StartupTracer.Span.BOOT_ACTIVITY);
     }
 
     @Override
     public void onConfigurationChanged(final Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
-        Utils.logInfo("boot", "Change boot activity configuration, process [" + android.os.Process.myPid()
-                + "], instance [" + System.identityHashCode(this) + "], task [" + getTaskId()
-                + "], configuration [" + Utils.formatInputConfiguration(newConfig) + "]");
+        EventLog.logConfiguration(EventLog.Event.BOOT_CONFIGURATION, System.identityHashCode(this), getTaskId(), newConfig);
     }
 
     @Override
     protected void onDestroy() {
-        Utils.logInfo("boot", "Destroy boot activity, process [" + android.os.Process.myPid()
-                + "], instance [" + System.identityHashCode(this) + "], task [" + getTaskId()
-                + "], finishing [" + isFinishing() + "], task root [" + isTaskRoot()
-                + "], changing configurations [" + isChangingConfigurations() + "], changes [0x"
-                + Integer.toHexString(getChangingConfigurations()) + "]");
+        EventLog.log(EventLog.Event.BOOT_DESTROY, android.os.Process.myPid(), System.identityHashCode(this), getTaskId(),
+                isFinishing() ? 1 : 0, isTaskRoot() ? 1 : 0, isChangingConfigurations() ? 1 : 0, getChangingConfigurations());
         super.onDestroy();
     }
 
-    private boolean isFirstRun() {
-        final String dataDir = getFilesDir().getAbsolutePath();
-        final String appDir = dataDir + "/app";
-        final File appDirFile = new File(appDir);
-        return !appDirFile.exists();
-    }
-
     private void startMainActivity() {
-        Utils.logInfo("boot", "Start main activity, process [" + android.os.Process.myPid()
-                + "], boot instance [" + System.identityHashCode(this) + "], task [" + getTaskId() + "]");
-        final Intent intent = getIntent();
-        String blockURL = "";
-        try {
-            final Uri blockURLUri = intent.getData();
-            if (null != blockURLUri && blockURLUri.toString().toLowerCase().startsWith("siyuan://")) {
-                Log.i("boot", "Block URL [" + blockURLUri + "]");
-                blockURL = blockURLUri.toString();
-            }
-        } catch (final Exception e) {
-            Utils.logError("boot", "gets block URL failed", e);
-        }
-
-        final Intent startMainIntent = new Intent(getApplicationContext(), MainActivity.class);
-        // 若 MainActivity 已在任务栈中则将其拉到栈顶复用，不创建新实例，避免触发 onDestroy → exit() 重启内核
-        startMainIntent.addFlags(Intent.FLAG_ACTIVITY_REORDER_TO_FRONT | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-        if (!blockURL.isEmpty()) {
-            startMainIntent.putExtra("blockURL", blockURL);
-        }
-        startActivity(startMainIntent);
+        EventLog.log(EventLog.Event.BOOT_START_MAIN, android.os.Process.myPid(), System.identityHashCode(this), getTaskId());
+        startActivity(LaunchGate.mainIntent(this, LaunchGate.getBlockURL(getIntent())));
     }
 
     private AlertDialog agreementDialog;
@@ -132,13 +92,12 @@ public class BootActivity extends AppCompatActivity {
             final String cmd = msg.getData().getString("cmd");
             if ("agreement-y".equals(cmd)) {
                 agreementDialog.dismiss();
+                LaunchGate.agreementSettled(BootActivity.this);
                 final ProgressBar progressBar = findViewById(R.id.progressBar);
                 runOnUiThread(() -> progressBar.setVisibility(View.VISIBLE));
                 startMainActivity();
             } else if ("agreement-n".equals(cmd)) {
-                final String dataDir = getFilesDir().getAbsolutePath();
-                final String appDir = dataDir + "/app";
-                final File appDirFile = new File(appDir);
+                final File appDirFile = AppEnvironment.get().appDir;
                 try {
                     FileUtils.deleteQuietly(appDirFile);
                 } catch (final Exception e) {
@@ -0,0 +1,189 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动阶段调度.
+ * <p>
+ * 各启动阶段声明自己依赖的阶段，没有依赖关系的阶段并发执行，需要操作界面的阶段在主线程上执行。
+ * 某个阶段失败时依赖它的阶段不再执行，全部结束后输出每个阶段的开始时间和耗时。
+ * 可选阶段（例如缓存和预加载）失败时只记录日志，依赖它的阶段照常执行，不触发失败回调。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class BootScheduler {
+
+    private static final int BACKGROUND_THREADS = 3;
+
+    /**
+     * 启动阶段任务.
+     */
+    interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * 启动阶段失败回调，在主线程上调用.
+     */
+    interface FailureHandler {
+        void onFailure(String stage, Throwable e);
+    }
+
+    private final Executor mainExecutor;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final long created = SystemClock.elapsedRealtime();
+
+    BootScheduler(final Handler mainHandler) {
+        this.mainExecutor = mainHandler::post;
+    }
+
+    /**
+     * 声明在主线程上执行的阶段，依赖的阶段必须已经声明.
+     */
+    BootScheduler main(final String name, final Task task, final String... deps) {
+        return add(new Stage(name, task, true, false, deps));
+    }
+
+    /**
+     * 声明在后台线程上执行的阶段，依赖的阶段必须已经声明.
+     */
+    BootScheduler background(final String name, final Task task, final String... deps) {
+        return add(new Stage(name, task, false, false, deps));
+    }
+
+    /**
+     * 声明在后台线程上执行的可选阶段，失败时只记录日志，依赖的阶段必须已经声明.
+     */
+    BootScheduler optional(final String name, final Task task, final String... deps) {
+        return add(new Stage(name, task, false, true, deps));
+    }
+
+    /**
+     * 开始执行所有阶段.
+     *
+     * @param failureHandler 阶段失败回调
+     * @return 所有阶段结束（包括失败）后完成
+     */
+    CompletableFuture<Void> start(final FailureHandler failureHandler) {
+        final AtomicInteger threadNum = new AtomicInteger();
+        final ExecutorService background = Executors.newFixedThreadPool(BACKGROUND_THREADS,
+                r -> new Thread(r, "BootScheduler-" + threadNum.incrementAndGet()));
+
+        final List<CompletableFuture<Void>> all = new ArrayList<>();
+        for (final Stage stage : stages.values()) {
+            final CompletableFuture<?>[] deps = new CompletableFuture<?>[stage.deps.length];
+            for (int i = 0; i < deps.length; i++) {
+                deps[i] = stages.get(stage.deps[i]).future;
+            }
+
+            final Executor executor = stage.mainThread ? mainExecutor : background;
+            stage.future = CompletableFuture.allOf(deps).thenRunAsync(() -> run(stage, failureHandler), executor);
+            all.add(stage.future);
+        }
+
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).handle((v, e) -> {
+            background.shutdown();
+            Utils.logInfo("boot", "Boot stages [" + format() + "]");
+            return null;
+        });
+    }
+
+    private void run(final Stage stage, final FailureHandler failureHandler) {
+        stage.startedAt = SystemClock.elapsedRealtime();
+        try {
+            stage.task.run();
+        } catch (final Throwable e) {
+            stage.failed = true;
+            if (stage.optional) {
+                Utils.logError("boot", "optional boot stage [" + stage.name + "] failed, continue", e);
+                return;
+            }
+            mainExecutor.execute(() -> failureHandler.onFailure(stage.name, e));
+            throw new CompletionException(e);
+        } finally {
+            stage.finishedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private BootScheduler add(final Stage stage) {
+        for (final String dep : stage.deps) {
+            if (!stages.containsKey(dep)) {
+                throw new IllegalArgumentException("stage [" + stage.name + "] depends on undeclared stage [" + dep + "]");
+            }
+        }
+        stages.put(stage.name, stage);
+        return this;
+    }
+
+    private String format() {
+        final StringBuilder ret = new StringBuilder();
+        for (final Stage stage : stages.values()) {
+            if (0 < ret.length()) {
+                ret.append(", ");
+            }
+            ret.append(stage.name).append('=');
+            if (0 == stage.startedAt) {
+                ret.append("skipped");
+                continue;
+            }
+            ret.append(stage.startedAt - created).append('+').append(stage.finishedAt - stage.startedAt).append("ms");
+            if (stage.failed) {
+                ret.append("(failed)");
+            }
+        }
+        return ret.toString();
+    }
+
+    private static final class Stage {
+        private final String name;
+        private final Task task;
+        private final boolean mainThread;
+        private final boolean optional;
+        private final String[] deps;
+        private CompletableFuture<Void> future;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile boolean failed;
+
+        private Stage(final String name, final Task task, final boolean mainThread, final boolean optional,
+                      final String[] deps) {
+            this.name = name;
+            this.task = task;
+            this.mainThread = mainThread;
+            this.optional = optional;
+            this.deps = deps;
+        }
+    }
+}
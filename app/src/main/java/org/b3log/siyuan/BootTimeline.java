@@ -0,0 +1,103 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 启动阶段时间线.
+ * <p>
+ * 记录各启动阶段相对启动起点的耗时（毫秒），首次页面加载完成后输出到日志，用于诊断启动慢的问题。
+ * 进程内首次启动以进程创建时间为起点，主界面重建时以重建时间为起点。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class BootTimeline {
+
+    static final String ASSET_CHECK = "assetCheck";
+    static final String UNZIP = "unzip";
+    static final String KERNEL_START = "kernelStart";
+    static final String HTTP_READY = "httpReady";
+    static final String PAGE_FINISHED = "pageFinished";
+    static final String FAILED = "failed";
+
+    private static final Map<String, Long> stages = new LinkedHashMap<>();
+    private static long base = Process.getStartElapsedRealtime();
+    private static boolean published;
+
+    private BootTimeline() {
+    }
+
+    /**
+     * 重新开始记录，主界面重建时调用.
+     *
+     * @param coldStart 是否为进程内首次启动，首次启动以进程创建时间为起点
+     */
+    static synchronized void reset(final boolean coldStart) {
+        stages.clear();
+        base = coldStart ? Process.getStartElapsedRealtime() : SystemClock.elapsedRealtime();
+        published = false;
+    }
+
+    /**
+     * 记录阶段完成时间，同一阶段只记录第一次.
+     */
+    static synchronized void mark(final String stage) {
+        if (!stages.containsKey(stage)) {
+            stages.put(stage, SystemClock.elapsedRealtime() - base);
+        }
+    }
+
+    static synchronized Map<String, Long> snapshot() {
+        return new LinkedHashMap<>(stages);
+    }
+
+    /**
+     * 记录阶段并将时间线输出到日志，只输出一次.
+     */
+    static void publish(final String stage) {
+        final String timeline;
+        synchronized (BootTimeline.class) {
+            mark(stage);
+            if (published) {
+                return;
+            }
+            published = true;
+            timeline = format();
+        }
+        Utils.logInfo("boot", "Boot timeline [" + timeline + "]");
+    }
+
+    private static String format() {
+        final StringBuilder ret = new StringBuilder();
+        for (final Map.Entry<String, Long> stage : stages.entrySet()) {
+            if (0 < ret.length()) {
+                ret.append(", ");
+            }
+            ret.append(stage.getKey()).append('=').append(stage.getValue()).append("ms");
+        }
+        return ret.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import com.koushikdutta.async.AsyncServer;
+import com.koushikdutta.async.ByteBufferList;
+import com.koushikdutta.async.http.server.AsyncHttpServerResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分块写出 JSON 响应.
+ * <p>
+ * 在工作线程上向数据源要数据，交给反应线程写出，上一块完全写入套接字后才生成下一块，
+ * 客户端读得慢时工作线程等待而不是在内存中堆积数据，反应线程不做任何阻塞操作。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.1.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class ChunkedResponse {
+
+    static final int CHUNK_SIZE = 32 * 1024;
+    private static final long WRITE_TIMEOUT = 60 * 1000;
+
+    /**
+     * 响应数据源.
+     */
+    interface Source {
+
+        /**
+         * 向 buf 追加下一块数据，每次追加到 {@link #CHUNK_SIZE} 左右即可返回.
+         *
+         * @return 数据已全部追加时返回 {@code true}
+         */
+        boolean fill(StringBuilder buf) throws Exception;
+    }
+
+    private ChunkedResponse() {
+    }
+
+    /**
+     * 以分块传输写出数据源的内容，在工作线程上调用，全部写出后返回.
+     * <p>
+     * 响应头发出后无法再改为错误响应，中途出错（数据源异常、客户端断开或者长时间不读取）时记录日志并直接结束响应。
+     * </p>
+     *
+     * @return 全部写出时返回 {@code true}
+     */
+    static boolean send(final AsyncServer server, final AsyncHttpServerResponse response, final Source source) throws InterruptedException {
+        final Semaphore drained = new Semaphore(0);
+        final ByteBufferList pending = new ByteBufferList();
+        // 以下两个标记由反应线程写入
+        final boolean[] closed = {false};
+        final boolean[] waiting = {false};
+        HttpWorkers.markCommitted();
+        server.post(() -> {
+            response.code(200);
+            response.setContentType("application/json; charset=utf-8");
+            response.setWriteableCallback(() -> {
+                if (!waiting[0]) {
+                    return;
+                }
+                response.write(pending);
+                if (!pending.hasRemaining()) {
+                    waiting[0] = false;
+                    drained.release();
+                }
+            });
+        });
+
+        final StringBuilder buf = new StringBuilder(CHUNK_SIZE + 1024);
+        boolean finished = false;
+        try {
+            while (!finished) {
+                finished = source.fill(buf);
+                final ByteBuffer chunk = ByteBuffer.wrap(buf.toString().getBytes(StandardCharsets.UTF_8));
+                buf.setLength(0);
+                server.post(() -> {
+                    if (!response.isOpen()) {
+                        closed[0] = true;
+                        drained.release();
+                        return;
+                    }
+                    pending.add(chunk);
+                    response.write(pending);
+                    if (!pending.hasRemaining()) {
+                        drained.release();
+                        return;
+                    }
+                    // 套接字缓冲区已满，等待可写回调写完剩余部分
+                    waiting[0] = true;
+                });
+                if (!drained.tryAcquire(WRITE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("write response timeout");
+                }
+                if (closed[0]) {
+                    throw new IOException("connection closed");
+                }
+            }
+            return true;
+        } catch (final InterruptedException e) {
+            throw e;
+        } catch (final Exception e) {
+            Utils.logError("http", "write chunked response failed", e);
+            return false;
+        } finally {
+            server.post(response::end);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import com.koushikdutta.async.AsyncServer;
+import com.koushikdutta.async.http.server.AsyncHttpServerResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 目录快照，用于增量遍历.
+ * <p>
+ * 每个遍历过的根目录在缓存目录下保存一份快照，记录各条目的相对路径、大小、修改时间和文件标识（inode），按遍历顺序存放。
+ * 调用方带上上次返回的 since 令牌时，遍历结果和快照按顺序归并，只返回新增、修改和删除的条目，并用本次结果替换快照；
+ * 令牌和快照不一致（首次调用、快照丢失或者被其他调用方刷新过）时返回全部条目并标记 full。
+ * </p>
+ * <p>
+ * 快照只保存最新一代，同一根目录有多个调用方交替使用时会退化为全量结果。
+ * 判断变化仍需要 stat 每个条目，但响应大小和快照写入都只和变化量有关，没有变化时不重写快照。
+ * </p>
+ * <p>
+ * 遍历时有目录列不出来则放弃本次归并并返回错误，保留原快照，不会把列不出的子树当作已删除。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.3.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class DirSnapshot {
+
+    private static final int MAGIC = 0x53594453;
+    private static final int VERSION = 1;
+    private static final long STALE_CHANGES = 60 * 60 * 1000;
+
+    private static final Set<String> busy = ConcurrentHashMap.newKeySet();
+    private static final SecureRandom random = new SecureRandom();
+
+    private DirSnapshot() {
+    }
+
+    /**
+     * 增量遍历根目录并以分块传输写出 {"code":0,"msg":"","data":{"token":"...","full":false,"changes":[...]}}.
+     * <p>
+     * changes 中的条目和 walkDir 的格式相同，另外带有 change 字段：added、modified 或 deleted。
+     * </p>
+     *
+     * @param snapshotDir 快照存放目录
+     * @param since       上次返回的令牌，首次调用传空字符串
+     */
+    static void stream(final AsyncServer server, final File snapshotDir, final Path root, final String since, final int parallelism,
+                       final AsyncHttpServerResponse response) throws Exception {
+        final long start = System.currentTimeMillis();
+        final String rootPath = root.toAbsolutePath().toString();
+        if (!busy.add(rootPath)) {
+            HttpWorkers.send(server, response, HttpWorkers.error("snapshot of [" + rootPath + "] is busy"));
+            return;
+        }
+
+        final Diff diff;
+        try {
+            diff = diff(snapshotDir, root, since, parallelism);
+        } catch (final IOException e) {
+            Utils.logError("http", "walk dir changes [" + rootPath + "] failed", e);
+            HttpWorkers.send(server, response, HttpWorkers.error("walk dir changes [" + rootPath + "] failed: " + e.getMessage()));
+            return;
+        } finally {
+            busy.remove(rootPath);
+        }
+
+        final char[] chars = new char[8192];
+        final boolean sent;
+        final boolean[] started = {false};
+        try (final Reader reader = new InputStreamReader(new FileInputStream(diff.changes), StandardCharsets.UTF_8)) {
+            sent = ChunkedResponse.send(server, response, buf -> {
+                if (!started[0]) {
+                    started[0] = true;
+                    buf.append("{\"code\":0,\"msg\":\"\",\"data\":{\"token\":").append(JSONObject.quote(diff.token))
+                            .append(",\"full\":").append(diff.full).append(",\"changes\":[");
+                }
+
+                while (ChunkedResponse.CHUNK_SIZE > buf.length()) {
+                    final int n = reader.read(chars);
+                    if (0 > n) {
+                        buf.append("]}}");
+                        return true;
+                    }
+                    buf.append(chars, 0, n);
+                }
+                return false;
+            });
+        } finally {
+            FileUtils.deleteQuietly(diff.changes);
+        }
+        Utils.logInfo("http", "Walk dir changes [" + rootPath + "]" + (sent ? "" : " aborted") + ", full [" + diff.full + "], [" + diff.count
+                + "] changes in [" + (System.currentTimeMillis() - start) + "] ms");
+    }
+
+    /**
+     * 遍历根目录并和快照归并，变化的条目以 JSON 片段写入临时文件，快照在返回前更新.
+     */
+    private static Diff diff(final File snapshotDir, final Path root, final String since, final int parallelism) throws IOException {
+        FileUtils.forceMkdir(snapshotDir);
+        cleanStaleChanges(snapshotDir);
+
+        final String name = digest(root.toAbsolutePath().toString());
+        final File snapshotFile = new File(snapshotDir, name + ".snap");
+        final File tmpFile = new File(snapshotDir, name + ".snap.tmp");
+        final File changesFile = File.createTempFile(name, ".changes", snapshotDir);
+
+        Header header = null;
+        DataInputStream old = null;
+        if (snapshotFile.exists()) {
+            try {
+                old = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+                header = readHeader(old);
+            } catch (final IOException e) {
+                Utils.logError("http", "read dir snapshot [" + snapshotFile + "] failed", e);
+                header = null;
+            }
+        }
+
+        final boolean full = null == header || !header.token().equals(since);
+        if (full) {
+            closeQuietly(old);
+            old = null;
+        }
+        final Header next = null == header ? new Header(random.nextLong() & Long.MAX_VALUE, 1) : new Header(header.id, header.generation + 1);
+
+        int count = 0;
+        boolean committed = false;
+        boolean walkFailed = false;
+        try (final DataOutputStream snap = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+             final Writer changes = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(changesFile), StandardCharsets.UTF_8))) {
+            snap.writeInt(MAGIC);
+            snap.writeByte(VERSION);
+            snap.writeLong(next.id);
+            snap.writeLong(next.generation);
+
+            final DirWalker walker = new DirWalker(root, null, parallelism, true);
+            final StringBuilder buf = new StringBuilder(512);
+            DirWalker.Entry cur = nextEntry(walker);
+            Record prev = null == old ? null : readRecord(old);
+            while (null != cur || null != prev) {
+                final int cmp = null == cur ? 1 : null == prev ? -1 : DirWalker.comparePath(cur.relativePath, prev.relativePath);
+                String change = null;
+                if (0 > cmp) {
+                    change = "added";
+                } else if (0 < cmp) {
+                    change = "deleted";
+                } else if (cur.size != prev.size || cur.updated != prev.updated || cur.fileKey != prev.fileKey || cur.isDir != prev.isDir) {
+                    change = "modified";
+                }
+
+                buf.setLength(0);
+                if (0 <= cmp) {
+                    if (null != change && 0 < cmp) {
+                        prev.appendTo(buf, root);
+                    }
+                    prev = readRecord(old);
+                }
+                if (0 >= cmp) {
+                    writeRecord(snap, cur);
+                    if (null != change) {
+                        cur.appendTo(buf);
+                    }
+                    cur = nextEntry(walker);
+                }
+
+                if (null != change) {
+                    // 去掉结尾的 }，追加变化类型
+                    buf.setLength(buf.length() - 1);
+                    buf.append(",\"change\":\"").append(change).append("\"}");
+                    if (0 < count) {
+                        changes.write(',');
+                    }
+                    changes.append(buf);
+                    count++;
+                }
+            }
+            snap.writeByte(0);
+            committed = true;
+        } catch (final UncheckedIOException e) {
+            // 列目录失败，原快照没有问题，保留后下次调用仍可以增量归并
+            walkFailed = true;
+            throw e.getCause();
+        } finally {
+            closeQuietly(old);
+            if (!committed) {
+                if (!walkFailed) {
+                    // 快照可能已经损坏，删除后下次调用返回全量结果
+                    FileUtils.deleteQuietly(snapshotFile);
+                }
+                FileUtils.deleteQuietly(tmpFile);
+                FileUtils.deleteQuietly(changesFile);
+            }
+        }
+
+        if (!full && 0 == count) {
+            // 没有变化，保留原快照和令牌
+            FileUtils.deleteQuietly(tmpFile);
+            return new Diff(header.token(), false, changesFile, 0);
+        }
+        if (!tmpFile.renameTo(snapshotFile)) {
+            FileUtils.deleteQuietly(tmpFile);
+            FileUtils.deleteQuietly(snapshotFile);
+            throw new IOException("replace dir snapshot [" + snapshotFile + "] failed");
+        }
+        return new Diff(next.token(), full, changesFile, count);
+    }
+
+    private static DirWalker.Entry nextEntry(final DirWalker walker) {
+        DirWalker.Entry ret = walker.next();
+        if (null != ret && ret.relativePath.isEmpty()) {
+            // 根目录自身不计入快照
+            ret = walker.next();
+        }
+        return ret;
+    }
+
+    private static Header readHeader(final DataInputStream in) throws IOException {
+        if (MAGIC != in.readInt() || VERSION != in.readByte()) {
+            throw new IOException("unsupported dir snapshot");
+        }
+        return new Header(in.readLong(), in.readLong());
+    }
+
+    private static void writeRecord(final DataOutputStream out, final DirWalker.Entry entry) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(entry.relativePath);
+        out.writeLong(entry.size);
+        out.writeLong(entry.updated);
+        out.writeInt(entry.fileKey);
+        out.writeBoolean(entry.isDir);
+    }
+
+    private static Record readRecord(final DataInputStream in) throws IOException {
+        if (null == in || 1 != in.readByte()) {
+            return null;
+        }
+        return new Record(in.readUTF(), in.readLong(), in.readLong(), in.readInt(), in.readBoolean());
+    }
+
+    private static void cleanStaleChanges(final File snapshotDir) {
+        final File[] files = snapshotDir.listFiles((dir, n) -> n.endsWith(".changes"));
+        if (null == files) {
+            return;
+        }
+        // 客户端中途断开时临时文件来不及删除，下次调用时清理
+        final long now = System.currentTimeMillis();
+        for (final File file : files) {
+            if (STALE_CHANGES < now - file.lastModified()) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    private static String digest(final String path) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-1").digest(path.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder ret = new StringBuilder();
+            for (final byte b : hash) {
+                ret.append(String.format("%02x", b));
+            }
+            return ret.toString();
+        } catch (final Exception e) {
+            return Integer.toHexString(path.hashCode());
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        if (null == closeable) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (final IOException ignored) {
+        }
+    }
+
+    private static final class Header {
+        private final long id;
+        private final long generation;
+
+        private Header(final long id, final long generation) {
+            this.id = id;
+            this.generation = generation;
+        }
+
+        private String token() {
+            return Long.toHexString(id) + "-" + Long.toHexString(generation);
+        }
+    }
+
+    private static final class Record {
+        private final String relativePath;
+        private final long size;
+        private final long updated;
+        private final int fileKey;
+        private final boolean isDir;
+
+        private Record(final String relativePath, final long size, final long updated, final int fileKey, final boolean isDir) {
+            this.relativePath = relativePath;
+            this.size = size;
+            this.updated = updated;
+            this.fileKey = fileKey;
+            this.isDir = isDir;
+        }
+
+        private void appendTo(final StringBuilder buf, final Path root) {
+            final int slash = relativePath.lastIndexOf('/');
+            buf.append("{\"path\":").append(JSONObject.quote(root.resolve(relativePath).toAbsolutePath().toString()))
+                    .append(",\"name\":").append(JSONObject.quote(relativePath.substring(slash + 1)))
+                    .append(",\"size\":").append(size)
+                    .append(",\"updated\":").append(updated)
+                    .append(",\"isDir\":").append(isDir)
+                    .append('}');
+        }
+    }
+
+    private static final class Diff {
+        private final String token;
+        private final boolean full;
+        private final File changes;
+        private final int count;
+
+        private Diff(final String token, final boolean full, final File changes, final int count) {
+            this.token = token;
+            this.full = full;
+            this.changes = changes;
+            this.count = count;
+        }
+    }
+}
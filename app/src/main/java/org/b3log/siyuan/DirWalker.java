@@ -0,0 +1,381 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import com.blankj.utilcode.util.StringUtils;
+import com.koushikdutta.async.AsyncServer;
+import com.koushikdutta.async.http.server.AsyncHttpServerResponse;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 流式遍历目录.
+ * <p>
+ * 按目录逐层迭代，每层只持有当前目录的条目列表，遍历到的条目直接编码写入响应，不再先收集全部文件再构造 JSONArray。
+ * 同一目录下按文件名排序，先输出目录本身再输出其下的条目，因此可以用上一页最后一个条目的相对路径作为游标续读。
+ * </p>
+ * <p>
+ * 列目录时通过 {@link BasicFileAttributes} 一次读出大小、修改时间和类型，每个条目只需要一次 stat。
+ * 当前目录下即将进入的子目录提前提交到 ForkJoin 线程池并行列出，输出顺序不变。
+ * </p>
+ * <p>
+ * 严格模式下列目录或读取条目属性失败时抛出 {@link UncheckedIOException}，不把列不出的目录当作空目录，
+ * 和快照归并时不会因为一次读取失败把整个子树当作已删除。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.2.2.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class DirWalker {
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    /**
+     * 并行列目录的线程数上限，请求中的 parallelism 参数不能超过该值.
+     */
+    static final int MAX_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static ForkJoinPool pool;
+
+    private final Path root;
+    private final int parallelism;
+    private final boolean strict;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private String cursor;
+    private boolean started;
+    private Entry current;
+
+    /**
+     * @param root        遍历的根目录，根目录本身作为第一个条目输出
+     * @param cursor      游标，由 {@link #cursor()} 返回，只输出排在游标之后的条目，从头开始时传 {@code null}
+     * @param parallelism 同时预读的子目录数，不大于 1 时在调用线程上串行遍历
+     */
+    DirWalker(final Path root, final String cursor, final int parallelism) {
+        this(root, cursor, parallelism, false);
+    }
+
+    /**
+     * @param root        遍历的根目录，根目录本身作为第一个条目输出
+     * @param cursor      游标，由 {@link #cursor()} 返回，只输出排在游标之后的条目，从头开始时传 {@code null}
+     * @param parallelism 同时预读的子目录数，不大于 1 时在调用线程上串行遍历
+     * @param strict      是否为严格模式，严格模式下读取失败时 {@link #next()} 抛出 {@link UncheckedIOException}
+     */
+    DirWalker(final Path root, final String cursor, final int parallelism, final boolean strict) {
+        this.root = root;
+        this.strict = strict;
+        // 游标是以 / 开头的相对路径，根目录的游标为 /
+        this.cursor = StringUtils.isEmpty(cursor) || '/' != cursor.charAt(0) ? null : cursor.substring(1);
+        this.parallelism = Math.max(1, Math.min(parallelism, MAX_PARALLELISM));
+    }
+
+    /**
+     * 下一个条目，遍历结束时返回 {@code null}.
+     *
+     * @throws UncheckedIOException 严格模式下列目录失败
+     */
+    Entry next() {
+        if (!started) {
+            started = true;
+            final BasicFileAttributes attrs = readAttributes(root);
+            if (null == attrs) {
+                if (strict) {
+                    throw new UncheckedIOException(new IOException("read dir [" + root + "] failed"));
+                }
+                return null;
+            }
+            final Entry rootEntry = new Entry(root, "", attrs);
+            rootEntry.relativePath = "";
+            if (attrs.isDirectory()) {
+                stack.push(new Frame(rootEntry, checked(root, list(root, strict))));
+            }
+            if (null == cursor) {
+                prefetch();
+                current = rootEntry;
+                return current;
+            }
+        }
+
+        while (!stack.isEmpty()) {
+            final Frame frame = stack.peek();
+            if (frame.index >= frame.entries.length) {
+                stack.pop();
+                continue;
+            }
+
+            final int i = frame.index++;
+            final Entry entry = frame.entries[i];
+            final String rel = frame.entry.relativePath.isEmpty() ? entry.name : frame.entry.relativePath + "/" + entry.name;
+            entry.relativePath = rel;
+            if (null != cursor) {
+                final int cmp = comparePath(rel, cursor);
+                if (0 >= cmp) {
+                    // 游标就是这个目录或者在这个目录下时进入目录继续跳过，否则整个子树都已经输出过
+                    if (entry.isDir && (0 == cmp || cursor.startsWith(rel + "/"))) {
+                        stack.push(new Frame(entry, checked(entry.path, list(entry.path, strict))));
+                    }
+                    continue;
+                }
+                // 遍历顺序和路径顺序一致，越过游标后不再需要比较
+                cursor = null;
+            }
+
+            if (entry.isDir) {
+                final ForkJoinTask<Entry[]> task = frame.takePrefetched(i);
+                stack.push(new Frame(entry, checked(entry.path, null != task ? task.join() : list(entry.path, strict))));
+            }
+            prefetch();
+            current = entry;
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * 上一次 {@link #next()} 返回条目的游标，下一页从该条目之后开始.
+     */
+    String cursor() {
+        return "/" + (null == current ? "" : current.relativePath);
+    }
+
+    /**
+     * 为栈顶目录中接下来的子目录提交预读任务，同时在途的任务不超过 parallelism 个.
+     */
+    private void prefetch() {
+        if (1 >= parallelism || null != cursor || stack.isEmpty()) {
+            return;
+        }
+
+        final Frame frame = stack.peek();
+        for (int i = Math.max(frame.index, frame.prefetchedTo); i < frame.entries.length && frame.prefetched.size() < parallelism; i++) {
+            frame.prefetchedTo = i + 1;
+            final Entry entry = frame.entries[i];
+            if (entry.isDir) {
+                frame.prefetched.addLast(new Prefetch(i, pool().submit(() -> list(entry.path, strict))));
+            }
+        }
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (null == pool) {
+            pool = new ForkJoinPool(MAX_PARALLELISM);
+        }
+        return pool;
+    }
+
+    /**
+     * 列目录失败时严格模式下抛出异常，否则当作空目录继续遍历.
+     */
+    private Entry[] checked(final Path dir, final Entry[] entries) {
+        if (null != entries) {
+            return entries;
+        }
+        if (strict) {
+            throw new UncheckedIOException(new IOException("list dir [" + dir + "] failed"));
+        }
+        return EMPTY;
+    }
+
+    /**
+     * 列出目录下的条目并读取属性，按名称排序，列目录失败时返回 {@code null}.
+     *
+     * @param strict 为 {@code true} 时读取某个条目的属性失败也算列目录失败，只有遍历期间被删除的条目才跳过
+     */
+    private static Entry[] list(final Path dir, final boolean strict) {
+        final List<Entry> ret = new ArrayList<>();
+        try (final DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (final Path child : children) {
+                final BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(child, BasicFileAttributes.class);
+                } catch (final NoSuchFileException e) {
+                    // 遍历期间被删除的条目直接跳过
+                    continue;
+                } catch (final IOException | SecurityException e) {
+                    if (strict) {
+                        throw e;
+                    }
+                    // 无权限访问的条目直接跳过
+                    continue;
+                }
+                ret.add(new Entry(child, child.getFileName().toString(), attrs));
+            }
+        } catch (final IOException | DirectoryIteratorException | SecurityException e) {
+            Utils.logError("http", "list dir [" + dir + "] failed", e);
+            return null;
+        }
+
+        final Entry[] entries = ret.toArray(EMPTY);
+        Arrays.sort(entries, (a, b) -> a.name.compareTo(b.name));
+        return entries;
+    }
+
+    private static BasicFileAttributes readAttributes(final Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (final IOException | SecurityException e) {
+            // 遍历期间被删除或者无权限访问的条目直接跳过
+            return null;
+        }
+    }
+
+    /**
+     * 按路径分量比较，分隔符排在所有字符之前，和遍历顺序一致.
+     */
+    static int comparePath(final String a, final String b) {
+        final int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            final char ca = a.charAt(i);
+            final char cb = b.charAt(i);
+            if (ca != cb) {
+                return ('/' == ca ? 0 : ca + 1) - ('/' == cb ? 0 : cb + 1);
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * 遍历目录并以分块传输写出 {"code":0,"msg":"","data":{"files":[...]}}，响应格式和之前一次性构造的 JSON 相同.
+     * <p>
+     * 指定 limit 时最多输出 limit 个条目，还有剩余条目时在 data.nextCursor 中返回下一页的游标。
+     * 在工作线程上调用，上一块写出后才继续遍历，客户端读得慢时不会在内存中堆积数据。
+     * </p>
+     */
+    static void stream(final AsyncServer server, final Path dir, final String cursor, final int limit, final int parallelism,
+                       final AsyncHttpServerResponse response) throws Exception {
+        final long start = System.currentTimeMillis();
+        final DirWalker walker = new DirWalker(dir, cursor, parallelism);
+        final int[] count = {0};
+        final boolean[] started = {false};
+        final boolean sent = ChunkedResponse.send(server, response, buf -> {
+            if (!started[0]) {
+                started[0] = true;
+                buf.append("{\"code\":0,\"msg\":\"\",\"data\":{\"files\":[");
+            }
+
+            while (ChunkedResponse.CHUNK_SIZE > buf.length()) {
+                if (0 < limit && limit <= count[0]) {
+                    buf.append("]");
+                    final String last = walker.cursor();
+                    if (null != walker.next()) {
+                        // 多取出的条目不输出，下一页从最后输出的条目之后开始
+                        buf.append(",\"nextCursor\":").append(JSONObject.quote(last));
+                    }
+                    buf.append("}}");
+                    return true;
+                }
+
+                final Entry entry = walker.next();
+                if (null == entry) {
+                    buf.append("]}}");
+                    return true;
+                }
+
+                if (0 < count[0]) {
+                    buf.append(',');
+                }
+                entry.appendTo(buf);
+                count[0]++;
+            }
+            return false;
+        });
+        Utils.logInfo("http", "Walk dir [" + dir + "]" + (sent ? "" : " aborted") + ", [" + count[0] + "] entries, parallelism ["
+                + walker.parallelism + "] in [" + (System.currentTimeMillis() - start) + "] ms");
+    }
+
+    /**
+     * 遍历到的条目，属性在列目录时一次读出.
+     */
+    static final class Entry {
+        final Path path;
+        final String name;
+        final long size;
+        final long updated;
+        final boolean isDir;
+        final int fileKey;
+        String relativePath;
+
+        private Entry(final Path path, final String name, final BasicFileAttributes attrs) {
+            this.path = path;
+            this.name = name;
+            this.size = attrs.size();
+            this.updated = attrs.lastModifiedTime().toMillis();
+            this.isDir = attrs.isDirectory();
+            // 文件系统标识（设备号和 inode），同名文件被替换时会变化
+            final Object key = attrs.fileKey();
+            this.fileKey = null == key ? 0 : key.hashCode();
+        }
+
+        void appendTo(final StringBuilder buf) {
+            buf.append("{\"path\":").append(JSONObject.quote(path.toAbsolutePath().toString()))
+                    .append(",\"name\":").append(JSONObject.quote(name))
+                    .append(",\"size\":").append(size)
+                    .append(",\"updated\":").append(updated)
+                    .append(",\"isDir\":").append(isDir)
+                    .append('}');
+        }
+    }
+
+    private static final class Frame {
+        private final Entry entry;
+        private final Entry[] entries;
+        private final Deque<Prefetch> prefetched = new ArrayDeque<>();
+        private int index;
+        private int prefetchedTo;
+
+        private Frame(final Entry entry, final Entry[] entries) {
+            this.entry = entry;
+            this.entries = entries;
+        }
+
+        private ForkJoinTask<Entry[]> takePrefetched(final int i) {
+            final Prefetch head = prefetched.peekFirst();
+            if (null == head || head.index != i) {
+                return null;
+            }
+            prefetched.pollFirst();
+            return head.task;
+        }
+    }
+
+    private static final class Prefetch {
+        private final int index;
+        private final ForkJoinTask<Entry[]> task;
+
+        private Prefetch(final int index, final ForkJoinTask<Entry[]> task) {
+            this.index = index;
+            this.task = task;
+        }
+    }
+}
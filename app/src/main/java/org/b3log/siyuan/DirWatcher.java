@@ -0,0 +1,420 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import com.blankj.utilcode.util.StringUtils;
+import com.koushikdutta.async.AsyncServer;
+import com.koushikdutta.async.http.server.AsyncHttpServerResponse;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 目录变化推送.
+ * <p>
+ * 为请求的根目录及其下每个子目录注册 {@link FileObserver}（inotify），短时间内的大量事件先按路径合并，
+ * 静默 {@value #QUIET} 毫秒（最长 {@value #MAX_DELAY} 毫秒）后作为一批变化写入环形缓冲区，
+ * 通过 /api/watchDir 长轮询按游标取走，调用方不再需要周期性全量遍历目录。
+ * 根目录超过 {@value #IDLE} 毫秒没有轮询时注销所有监听。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class DirWatcher {
+
+    private static final int MASK = FileObserver.CREATE | FileObserver.DELETE | FileObserver.MODIFY | FileObserver.CLOSE_WRITE
+            | FileObserver.MOVED_FROM | FileObserver.MOVED_TO | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+    private static final long QUIET = 300;
+    private static final long MAX_DELAY = 2000;
+    private static final long IDLE = 2 * 60 * 1000;
+    private static final long SWEEP_INTERVAL = 30 * 1000;
+    private static final long DEFAULT_TIMEOUT = 25 * 1000;
+    private static final long MAX_TIMEOUT = 60 * 1000;
+    private static final int MAX_CHANGES = 4096;
+    private static final int MAX_DIRS = 4096;
+
+    private static final int CREATED = 1;
+    private static final int MODIFIED = 2;
+    private static final int DELETED = 3;
+    private static final String[] CHANGE_NAMES = {"", "created", "modified", "deleted"};
+
+    private static final Map<String, Root> roots = new HashMap<>();
+    private static Handler handler;
+
+    private DirWatcher() {
+    }
+
+    /**
+     * 长轮询根目录的变化，需要在 HTTP 服务线程上调用.
+     * <p>
+     * 响应为 {"code":0,"msg":"","data":{"cursor":"...","overflow":false,"partial":false,"changes":[...]}}，
+     * 游标为空时注册监听并立即返回当前游标；游标之后已有变化时立即返回，否则等到有变化或者超时。
+     * overflow 为 true 表示游标已失效（监听重建或者变化过多被丢弃），调用方需要重新全量遍历；
+     * partial 为 true 表示子目录过多，只监听了其中一部分。
+     * </p>
+     */
+    static void poll(final AsyncServer server, final Path rootPath, final String cursor, final long timeout,
+                     final AsyncHttpServerResponse response) {
+        final Root root;
+        synchronized (DirWatcher.class) {
+            final String key = rootPath.toAbsolutePath().toString();
+            Root r = roots.get(key);
+            if (null == r) {
+                r = new Root(key);
+                roots.put(key, r);
+                final Root created = r;
+                handler().post(created::start);
+                Utils.logInfo("watch", "Watch dir [" + key + "]");
+            }
+            root = r;
+        }
+
+        synchronized (root) {
+            root.lastAccess = SystemClock.uptimeMillis();
+            final String[] parts = null == cursor ? new String[0] : cursor.split(":");
+            if (2 != parts.length || !root.id.equals(parts[0])) {
+                // 没有游标或者游标属于已经注销的监听
+                respond(response, root, Long.MAX_VALUE, !StringUtils.isEmpty(cursor));
+                return;
+            }
+
+            final long seq;
+            try {
+                seq = Long.parseLong(parts[1]);
+            } catch (final NumberFormatException e) {
+                respond(response, root, Long.MAX_VALUE, true);
+                return;
+            }
+            if (seq < root.firstSeq - 1) {
+                respond(response, root, Long.MAX_VALUE, true);
+                return;
+            }
+            if (seq < root.seq) {
+                respond(response, root, seq, false);
+                return;
+            }
+
+            final Poll poll = new Poll(server, response, seq);
+            root.waiting.add(poll);
+            final long wait = 0 < timeout ? Math.min(timeout, MAX_TIMEOUT) : DEFAULT_TIMEOUT;
+            server.postDelayed(() -> {
+                synchronized (root) {
+                    if (!root.waiting.remove(poll)) {
+                        return;
+                    }
+                    root.lastAccess = SystemClock.uptimeMillis();
+                    respond(response, root, seq, false);
+                }
+            }, wait);
+        }
+    }
+
+    /**
+     * 注销所有监听，应用退出时调用.
+     */
+    static synchronized void shutdown() {
+        for (final Root root : roots.values()) {
+            handler().post(root::stop);
+        }
+        roots.clear();
+    }
+
+    private static synchronized Handler handler() {
+        if (null == handler) {
+            final HandlerThread thread = new HandlerThread("DirWatcher");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+            handler.postDelayed(DirWatcher::sweep, SWEEP_INTERVAL);
+        }
+        return handler;
+    }
+
+    /**
+     * 注销长时间没有轮询的根目录.
+     */
+    private static void sweep() {
+        final long now = SystemClock.uptimeMillis();
+        synchronized (DirWatcher.class) {
+            for (final Iterator<Root> it = roots.values().iterator(); it.hasNext(); ) {
+                final Root root = it.next();
+                synchronized (root) {
+                    if (!root.waiting.isEmpty() || IDLE > now - root.lastAccess) {
+                        continue;
+                    }
+                }
+                it.remove();
+                root.stop();
+                Utils.logInfo("watch", "Release idle dir watcher [" + root.path + "]");
+            }
+        }
+        handler.postDelayed(DirWatcher::sweep, SWEEP_INTERVAL);
+    }
+
+    /**
+     * 在 HTTP 服务线程上写出 seq 之后的变化，调用时持有 root 的锁.
+     */
+    private static void respond(final AsyncHttpServerResponse response, final Root root, final long seq, final boolean overflow) {
+        try {
+            final JSONArray changes = new JSONArray();
+            for (final Change change : root.changes) {
+                if (change.seq > seq) {
+                    changes.put(new JSONObject().put("path", change.path).put("isDir", change.isDir)
+                            .put("change", CHANGE_NAMES[change.kind]));
+                }
+            }
+            final JSONObject data = new JSONObject().put("cursor", root.id + ":" + root.seq).put("overflow", overflow)
+                    .put("partial", root.partial).put("changes", changes);
+            response.send(new JSONObject().put("code", 0).put("msg", "").put("data", data));
+        } catch (final Exception e) {
+            Utils.logError("watch", "respond dir changes failed", e);
+        }
+    }
+
+    private static final class Root {
+        private final String id = UUID.randomUUID().toString();
+        private final String path;
+
+        // 以下只在监听线程上访问
+        private final Map<String, FileObserver> observers = new HashMap<>();
+        private final Map<String, int[]> pending = new LinkedHashMap<>();
+        private final Runnable flush = this::flush;
+        private long firstPendingAt;
+        private boolean stopped;
+
+        // 以下在持有 Root 锁时访问
+        private final ArrayDeque<Change> changes = new ArrayDeque<>();
+        private final List<Poll> waiting = new ArrayList<>();
+        private long seq;
+        private long firstSeq = 1;
+        private long lastAccess = SystemClock.uptimeMillis();
+        private volatile boolean partial;
+
+        private Root(final String path) {
+            this.path = path;
+        }
+
+        private void start() {
+            if (!stopped) {
+                watchTree(new File(path), false);
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            handler.removeCallbacks(flush);
+            for (final FileObserver observer : observers.values()) {
+                observer.stopWatching();
+            }
+            observers.clear();
+            pending.clear();
+        }
+
+        /**
+         * 监听目录及其下所有子目录.
+         *
+         * @param report 是否将已存在的条目作为新建上报，用于监听建立之前就已经写入新目录的文件
+         */
+        private void watchTree(final File dir, final boolean report) {
+            final ArrayDeque<File> dirs = new ArrayDeque<>();
+            dirs.push(dir);
+            while (!dirs.isEmpty()) {
+                final File d = dirs.pop();
+                if (MAX_DIRS <= observers.size()) {
+                    if (!partial) {
+                        partial = true;
+                        Utils.logInfo("watch", "Too many dirs under [" + path + "], watch partially");
+                    }
+                    return;
+                }
+
+                final String dirPath = d.getAbsolutePath();
+                if (observers.containsKey(dirPath)) {
+                    continue;
+                }
+                final FileObserver observer = new FileObserver(dirPath, MASK) {
+                    @Override
+                    public void onEvent(final int event, final String name) {
+                        handler.post(() -> onChange(dirPath, event & FileObserver.ALL_EVENTS, name));
+                    }
+                };
+                observer.startWatching();
+                observers.put(dirPath, observer);
+
+                try (final DirectoryStream<Path> children = Files.newDirectoryStream(d.toPath())) {
+                    for (final Path child : children) {
+                        final File file = child.toFile();
+                        final boolean isDir = file.isDirectory();
+                        if (isDir) {
+                            dirs.push(file);
+                        }
+                        if (report) {
+                            enqueue(file.getAbsolutePath(), isDir, CREATED);
+                        }
+                    }
+                } catch (final IOException | SecurityException e) {
+                    Utils.logError("watch", "list dir [" + dirPath + "] failed", e);
+                }
+            }
+        }
+
+        private void unwatchTree(final String dirPath) {
+            final String prefix = dirPath + "/";
+            for (final Iterator<Map.Entry<String, FileObserver>> it = observers.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<String, FileObserver> entry = it.next();
+                if (entry.getKey().equals(dirPath) || entry.getKey().startsWith(prefix)) {
+                    entry.getValue().stopWatching();
+                    it.remove();
+                }
+            }
+        }
+
+        private void onChange(final String dirPath, final int event, final String name) {
+            if (stopped) {
+                return;
+            }
+            if (0 != (event & (FileObserver.DELETE_SELF | FileObserver.MOVE_SELF))) {
+                // 父目录会收到删除或移出事件，这里只需要注销监听
+                unwatchTree(dirPath);
+                return;
+            }
+            if (null == name) {
+                return;
+            }
+
+            final String filePath = dirPath + "/" + name;
+            if (0 != (event & (FileObserver.CREATE | FileObserver.MOVED_TO))) {
+                final File file = new File(filePath);
+                final boolean isDir = file.isDirectory();
+                enqueue(filePath, isDir, CREATED);
+                if (isDir) {
+                    watchTree(file, true);
+                }
+            } else if (0 != (event & (FileObserver.DELETE | FileObserver.MOVED_FROM))) {
+                final boolean isDir = observers.containsKey(filePath);
+                if (isDir) {
+                    unwatchTree(filePath);
+                }
+                enqueue(filePath, isDir, DELETED);
+            } else if (0 != (event & (FileObserver.MODIFY | FileObserver.CLOSE_WRITE))) {
+                enqueue(filePath, false, MODIFIED);
+            }
+        }
+
+        /**
+         * 按路径合并事件，并推迟到静默后写出.
+         */
+        private void enqueue(final String filePath, final boolean isDir, final int kind) {
+            final int[] prev = pending.get(filePath);
+            if (null == prev) {
+                pending.put(filePath, new int[]{kind, isDir ? 1 : 0});
+            } else if (CREATED == prev[0] && DELETED == kind) {
+                // 窗口内新建又删除的临时文件不上报
+                pending.remove(filePath);
+            } else if (DELETED == prev[0] && CREATED == kind) {
+                prev[0] = MODIFIED;
+                prev[1] = isDir ? 1 : 0;
+            } else if (CREATED != prev[0]) {
+                prev[0] = kind;
+            }
+
+            final long now = SystemClock.uptimeMillis();
+            if (1 == pending.size() && null == prev) {
+                firstPendingAt = now;
+            }
+            handler.removeCallbacks(flush);
+            handler.postDelayed(flush, Math.max(0, Math.min(QUIET, firstPendingAt + MAX_DELAY - now)));
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            final List<Poll> ready;
+            synchronized (this) {
+                for (final Map.Entry<String, int[]> entry : pending.entrySet()) {
+                    changes.addLast(new Change(++seq, entry.getKey(), 1 == entry.getValue()[1], entry.getValue()[0]));
+                }
+                while (MAX_CHANGES < changes.size()) {
+                    changes.pollFirst();
+                }
+                firstSeq = changes.isEmpty() ? seq + 1 : changes.peekFirst().seq;
+                ready = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+            pending.clear();
+
+            for (final Poll poll : ready) {
+                // 在发起该请求的 HTTP 服务反应线程上写出响应
+                poll.server.post(() -> {
+                    synchronized (this) {
+                        lastAccess = SystemClock.uptimeMillis();
+                        respond(poll.response, this, poll.seq, false);
+                    }
+                });
+            }
+        }
+    }
+
+    private static final class Change {
+        private final long seq;
+        private final String path;
+        private final boolean isDir;
+        private final int kind;
+
+        private Change(final long seq, final String path, final boolean isDir, final int kind) {
+            this.seq = seq;
+            this.path = path;
+            this.isDir = isDir;
+            this.kind = kind;
+        }
+    }
+
+    private static final class Poll {
+        private final AsyncServer server;
+        private final AsyncHttpServerResponse response;
+        private final long seq;
+
+        private Poll(final AsyncServer server, final AsyncHttpServerResponse response, final long seq) {
+            this.server = server;
+            this.response = response;
+            this.seq = seq;
+        }
+    }
+}
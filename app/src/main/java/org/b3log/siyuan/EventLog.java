@@ -0,0 +1,439 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.content.res.Configuration;
+import android.util.Log;
+import android.view.MotionEvent;
+
+import com.blankj.utilcode.util.StringUtils;
+import com.blankj.utilcode.util.TimeUtils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mobile.Mobile;
+
+/**
+ * 结构化事件日志.
+ * <p>
+ * 高频日志（输入设备、悬停事件、界面生命周期）只记录事件编号和原始数值参数，低于当前级别时直接返回，不拼接字符串。
+ * 事件以紧凑的二进制记录写入工作空间 temp/events.bin，需要查看时再按事件模板解码为和 mobile.log 相同格式的文本。
+ * 写入和 mobile.log 共用同一个写入线程。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class EventLog {
+
+    static final int DEBUG = 0;
+    static final int INFO = 1;
+    static final int WARN = 2;
+    static final int ERROR = 3;
+
+    /**
+     * 事件定义，编号写入日志文件，已发布的编号不能修改或复用.
+     * <p>
+     * 模板占位符依次消费参数：{} 十进制，{x} 十六进制，{b} 布尔，{f} 浮点（float 位模式），{a} 触摸事件动作名，{s} 文本参数.
+     * </p>
+     */
+    enum Event {
+        MAIN_CREATE(1, "boot", INFO, "Create main activity, process [{}], instance [{}], task [{}], saved state [{b}]"),
+        MAIN_NEW_INTENT(2, "boot", INFO, "Receive main activity intent, process [{}], instance [{}], task [{}]"),
+        MAIN_CONFIGURATION(3, "boot", INFO, "Change main activity configuration, process [{}], instance [{}], task [{}], configuration ["
+                + "keyboard [{}], keyboard hidden [{}], hard keyboard hidden [{}], navigation [{}], navigation hidden [{}], "
+                + "touchscreen [{}], ui mode [0x{x}], screen layout [0x{x}]]"),
+        MAIN_DESTROY(4, "boot", INFO, "Destroy main activity, process [{}], instance [{}], task [{}], finishing [{b}], "
+                + "task root [{b}], changing configurations [{b}], changes [0x{x}]"),
+        BOOT_CREATE(5, "boot", INFO, "Create boot activity, process [{}], instance [{}], task [{}], saved state [{b}]"),
+        BOOT_CONFIGURATION(6, "boot", INFO, "Change boot activity configuration, process [{}], instance [{}], task [{}], configuration ["
+                + "keyboard [{}], keyboard hidden [{}], hard keyboard hidden [{}], navigation [{}], navigation hidden [{}], "
+                + "touchscreen [{}], ui mode [0x{x}], screen layout [0x{x}]]"),
+        BOOT_DESTROY(7, "boot", INFO, "Destroy boot activity, process [{}], instance [{}], task [{}], finishing [{b}], "
+                + "task root [{b}], changing configurations [{b}], changes [0x{x}]"),
+        BOOT_START_MAIN(8, "boot", INFO, "Start main activity, process [{}], boot instance [{}], task [{}]"),
+
+        INPUT_DEVICE(20, "input", INFO, "{s} input device, id [{}], details [sources [0x{x}], keyboard type [{}], external [{b}], virtual [{b}]]"),
+        INPUT_DEVICE_UNAVAILABLE(21, "input", INFO, "{s} input device, id [{}], details [unavailable]"),
+        // 悬停和 DOM 输入事件由 InputDiagnostics 采样限速，只在详细采集时记录
+        HOVER(22, "input", INFO, "Native hover event [action={a}({}), tool={}, source=0x{x}, buttons=0x{x}, pressure={f}, "
+                + "pointer={}, device={}, position=({},{})]"),
+        DOM_INPUT(23, "input", INFO, "DOM input event [{s}]"),
+        INPUT_SUMMARY(24, "input", INFO, "Input summary, window [{}] ms, hover [{}], dom [{}], device [{}], suppressed total [{}]");
+
+        final int id;
+        final String tag;
+        final int level;
+        final String template;
+
+        Event(final int id, final String tag, final int level, final String template) {
+            this.id = id;
+            this.tag = tag;
+            this.level = level;
+            this.template = template;
+        }
+    }
+
+    private static final String LOG_NAME = "events.bin";
+    private static final long MAX_SIZE = 2L * 1024 * 1024;
+    private static final int MAX_PENDING = 8192;
+    private static final int MAX_TEXT = 2048;
+    private static final int RECORD_MAGIC = 0xE7;
+    private static final String LEVELS = "DIWE";
+    private static final Event[] EVENTS_BY_ID = new Event[256];
+
+    static {
+        for (final Event event : Event.values()) {
+            EVENTS_BY_ID[event.id] = event;
+        }
+    }
+
+    private static volatile int level = INFO;
+    private static final ConcurrentLinkedQueue<Record> queue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pending = new AtomicInteger();
+
+    // 以下只在持有类锁时访问
+    private static final ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+    private static String logPath;
+    private static FileChannel channel;
+    private static long size;
+
+    private EventLog() {
+    }
+
+    static void setLevel(final int minLevel) {
+        level = minLevel;
+    }
+
+    static int getLevel() {
+        return level;
+    }
+
+    /**
+     * 事件是否会被记录，高频调用点在收集参数前先判断，避免无谓的取值和装箱.
+     */
+    static boolean enabled(final Event event) {
+        return event.level >= level;
+    }
+
+    static void log(final Event event, final long... args) {
+        log(event, null, args);
+    }
+
+    /**
+     * 记录事件，低于当前级别时直接返回.
+     *
+     * @param text 模板中 {s} 对应的文本，没有时传 {@code null}
+     */
+    static void log(final Event event, final String text, final long... args) {
+        if (event.level < level) {
+            return;
+        }
+        if (MAX_PENDING <= pending.get()) {
+            return;
+        }
+
+        final Record record = new Record(event, System.currentTimeMillis(), text, args);
+        queue.offer(record);
+        pending.incrementAndGet();
+        if (DEBUG >= level) {
+            // 调试时同时输出到 logcat
+            Log.println(Log.DEBUG + event.level, event.tag, render(event, text, args));
+        }
+    }
+
+    /**
+     * 记录界面配置变更中和输入相关的字段.
+     */
+    static void logConfiguration(final Event event, final int instance, final int task, final Configuration configuration) {
+        if (!enabled(event)) {
+            return;
+        }
+        log(event, android.os.Process.myPid(), instance, task, configuration.keyboard, configuration.keyboardHidden,
+                configuration.hardKeyboardHidden, configuration.navigation, configuration.navigationHidden,
+                configuration.touchscreen, configuration.uiMode, configuration.screenLayout);
+    }
+
+    /**
+     * 写出队列中的事件，由 {@link MobileLog} 的写入线程调用.
+     */
+    static synchronized void flush() {
+        Record record = queue.poll();
+        if (null == record) {
+            return;
+        }
+
+        final String workspacePath = Mobile.getCurrentWorkspacePath();
+        if (StringUtils.isEmpty(workspacePath)) {
+            for (; null != record; record = queue.poll()) {
+                pending.decrementAndGet();
+            }
+            return;
+        }
+
+        final String path = workspacePath + "/temp/" + LOG_NAME;
+        try {
+            buf.clear();
+            for (; null != record; record = queue.poll()) {
+                pending.decrementAndGet();
+                if (buf.remaining() < record.maxSize()) {
+                    write(path);
+                    buf.clear();
+                }
+                record.encode(buf);
+            }
+            write(path);
+        } catch (final IOException e) {
+            Log.e("logging", "Write event log failed", e);
+            closeChannel();
+        }
+    }
+
+    /**
+     * 解码最近的事件，输出和 mobile.log 相同格式的文本.
+     */
+    static synchronized List<String> tail(final int lines) {
+        flush();
+        final Deque<String> ret = new ArrayDeque<>();
+        final int limit = Math.max(0, lines);
+        final String workspacePath = Mobile.getCurrentWorkspacePath();
+        if (StringUtils.isEmpty(workspacePath) || 0 == limit) {
+            return new ArrayList<>(ret);
+        }
+
+        final File dir = new File(workspacePath, "temp");
+        for (final File file : new File[]{new File(dir, LOG_NAME + ".1"), new File(dir, LOG_NAME)}) {
+            if (!file.exists()) {
+                continue;
+            }
+            try (final InputStream in = new FileInputStream(file)) {
+                decode(in, line -> {
+                    if (ret.size() == limit) {
+                        ret.removeFirst();
+                    }
+                    ret.addLast(line);
+                });
+            } catch (final IOException e) {
+                Log.e("logging", "Read event log [" + file + "] failed", e);
+            }
+        }
+        return new ArrayList<>(ret);
+    }
+
+    interface LineConsumer {
+        void accept(String line);
+    }
+
+    /**
+     * 将二进制事件记录解码为文本行，遇到损坏的记录时跳到下一个记录起始标记.
+     */
+    static void decode(final InputStream input, final LineConsumer consumer) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        while (true) {
+            final int magic = in.read();
+            if (-1 == magic) {
+                return;
+            }
+            if (RECORD_MAGIC != magic) {
+                continue;
+            }
+
+            try {
+                final int id = in.readUnsignedByte();
+                final long time = in.readLong();
+                final int argc = in.readUnsignedByte();
+                final long[] args = new long[argc];
+                for (int i = 0; i < argc; i++) {
+                    args[i] = readVarLong(in);
+                }
+                final int textLen = (int) readVarLong(in);
+                String text = null;
+                if (0 < textLen) {
+                    final byte[] bytes = new byte[Math.min(textLen, MAX_TEXT * 4)];
+                    in.readFully(bytes);
+                    text = new String(bytes, StandardCharsets.UTF_8);
+                }
+
+                final Event event = EVENTS_BY_ID[id];
+                final String message = null == event ? "event#" + id : render(event, text, args);
+                final char levelChar = null == event ? 'I' : LEVELS.charAt(event.level);
+                final String tag = null == event ? "event" : event.tag;
+                consumer.accept(levelChar + " " + TimeUtils.millis2String(time, "yyyy-MM-dd HH:mm:ss") + " " + tag + " " + message);
+            } catch (final EOFException e) {
+                return;
+            }
+        }
+    }
+
+    static String render(final Event event, final String text, final long[] args) {
+        final String template = event.template;
+        final StringBuilder ret = new StringBuilder(template.length() + 32);
+        int arg = 0;
+        for (int i = 0; i < template.length(); i++) {
+            final char c = template.charAt(i);
+            final int close = '{' == c ? template.indexOf('}', i) : -1;
+            if (0 > close) {
+                ret.append(c);
+                continue;
+            }
+
+            final String spec = template.substring(i + 1, close);
+            i = close;
+            if ("s".equals(spec)) {
+                ret.append(text);
+                continue;
+            }
+            if (arg >= args.length) {
+                ret.append('?');
+                continue;
+            }
+
+            final long value = args[arg++];
+            switch (spec) {
+                case "x":
+                    // 和 Integer.toHexString 保持一致，int 参数的负数不做符号扩展
+                    ret.append((int) value == value ? Integer.toHexString((int) value) : Long.toHexString(value));
+                    break;
+                case "b":
+                    ret.append(0 != value);
+                    break;
+                case "f":
+                    ret.append(Float.intBitsToFloat((int) value));
+                    break;
+                case "a":
+                    ret.append(MotionEvent.actionToString((int) value));
+                    break;
+                default:
+                    ret.append(value);
+            }
+        }
+        return ret.toString();
+    }
+
+    private static void write(final String path) throws IOException {
+        buf.flip();
+        if (!buf.hasRemaining()) {
+            return;
+        }
+
+        if (null != channel && (!path.equals(logPath) || !new File(path).exists())) {
+            closeChannel();
+        }
+        if (null == channel) {
+            channel = new FileOutputStream(path, true).getChannel();
+            logPath = path;
+            size = channel.size();
+        }
+        while (buf.hasRemaining()) {
+            size += channel.write(buf);
+        }
+
+        if (MAX_SIZE <= size) {
+            // 只保留一个历史文件
+            closeChannel();
+            final File active = new File(path);
+            final File previous = new File(path + ".1");
+            previous.delete();
+            if (!active.renameTo(previous)) {
+                active.delete();
+            }
+        }
+    }
+
+    private static void closeChannel() {
+        if (null == channel) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (final IOException ignored) {
+        }
+        channel = null;
+        logPath = null;
+    }
+
+    private static void writeVarLong(final ByteBuffer out, final long value) {
+        long v = (value << 1) ^ (value >> 63); // zigzag，负数也能紧凑编码
+        while (0 != (v & ~0x7FL)) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    private static long readVarLong(final DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if (0 == (b & 0x80)) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("malformed var long");
+    }
+
+    private static final class Record {
+        private final Event event;
+        private final long time;
+        private final byte[] text;
+        private final long[] args;
+
+        private Record(final Event event, final long time, final String text, final long[] args) {
+            this.event = event;
+            this.time = time;
+            this.text = null == text ? null : (MAX_TEXT < text.length() ? text.substring(0, MAX_TEXT) : text).getBytes(StandardCharsets.UTF_8);
+            this.args = args;
+        }
+
+        private int maxSize() {
+            return 1 + 1 + 8 + 1 + args.length * 10 + 5 + (null == text ? 0 : text.length);
+        }
+
+        private void encode(final ByteBuffer out) {
+            out.put((byte) RECORD_MAGIC);
+            out.put((byte) event.id);
+            out.putLong(time);
+            out.put((byte) args.length);
+            for (final long arg : args) {
+                writeVarLong(out, arg);
+            }
+            writeVarLong(out, null == text ? 0 : text.length);
+            if (null != text) {
+                out.put(text);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import com.koushikdutta.async.AsyncServer;
+import com.koushikdutta.async.http.server.AsyncHttpServerResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地 HTTP 服务的工作线程池.
+ * <p>
+ * HTTP 服务使用独立的 {@link AsyncServer} 反应线程，会阻塞的处理（遍历目录、读写快照）提交到有界线程池执行，
+ * 反应线程只负责收发数据，一次大目录遍历不会卡住其他请求和同步回调。
+ * 队列满时返回 503，单个接口同时处理的请求超过上限时返回 429，调用方稍后重试。
+ * </p>
+ * <p>
+ * 处理抛出异常时，如果还没有开始写出响应则返回错误响应；已经写出（例如分块响应已经发出响应头）时只记录日志。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class HttpWorkers {
+
+    private static final int THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int QUEUE = 32;
+    private static final int RETRY_AFTER_SECONDS = 1;
+
+    /**
+     * 在工作线程上执行的请求处理.
+     */
+    interface Task {
+        void run() throws Exception;
+    }
+
+    final AsyncServer server;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, AtomicInteger> inflight = new ConcurrentHashMap<>();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rejectedBusy = new LongAdder();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile int maxQueueDepth;
+
+    /**
+     * 当前工作线程上的请求是否已经开始写出响应.
+     */
+    private static final ThreadLocal<boolean[]> committed = new ThreadLocal<>();
+
+    HttpWorkers(final AsyncServer server) {
+        this.server = server;
+        final AtomicInteger threadNum = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE),
+                r -> new Thread(r, "HttpWorker-" + threadNum.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 将请求处理提交到线程池，需要在反应线程上调用.
+     *
+     * @param route       接口名，用于并发限制
+     * @param maxInflight 该接口同时处理（含排队）的请求上限，不限制时传 0
+     * @return 被拒绝（已返回 429 或者 503）时返回 {@code false}
+     */
+    boolean submit(final String route, final int maxInflight, final AsyncHttpServerResponse response, final Task task) {
+        final AtomicInteger routeInflight = inflight.computeIfAbsent(route, k -> new AtomicInteger());
+        if (0 < maxInflight && maxInflight < routeInflight.incrementAndGet()) {
+            routeInflight.decrementAndGet();
+            rejectedBusy.increment();
+            reject(response, 429, "Too Many Requests");
+            return false;
+        }
+        if (0 >= maxInflight) {
+            routeInflight.incrementAndGet();
+        }
+
+        final long submitted = System.currentTimeMillis();
+        try {
+            executor.execute(() -> {
+                final long started = System.currentTimeMillis();
+                queueLatency.record(started - submitted);
+                final boolean[] responded = {false};
+                committed.set(responded);
+                try {
+                    task.run();
+                } catch (final Throwable e) {
+                    failed.increment();
+                    if (responded[0]) {
+                        // 响应已经开始写出，不能再返回错误响应
+                        Utils.logError("http", "handle [" + route + "] failed after response committed", e);
+                    } else {
+                        Utils.logError("http", "handle [" + route + "] failed", e);
+                        send(response, error(e.getMessage()));
+                    }
+                } finally {
+                    committed.remove();
+                    routeInflight.decrementAndGet();
+                    latency.record(System.currentTimeMillis() - submitted);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            routeInflight.decrementAndGet();
+            rejectedQueueFull.increment();
+            reject(response, 503, "Service Unavailable");
+            return false;
+        }
+
+        final int depth = executor.getQueue().size();
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+        return true;
+    }
+
+    /**
+     * 在反应线程上写出 JSON 响应，可以在任意线程上调用.
+     */
+    void send(final AsyncHttpServerResponse response, final JSONObject json) {
+        send(server, response, json);
+    }
+
+    /**
+     * 在反应线程上写出 JSON 响应，可以在任意线程上调用.
+     */
+    static void send(final AsyncServer server, final AsyncHttpServerResponse response, final JSONObject json) {
+        markCommitted();
+        server.post(() -> response.send(json));
+    }
+
+    /**
+     * 标记当前工作线程上的请求已经开始写出响应，之后处理出错时不再返回错误响应.
+     * <p>
+     * 自行写出响应的接口在工作线程上提交响应前调用，不在工作线程上时不做任何事情。
+     * </p>
+     */
+    static void markCommitted() {
+        final boolean[] responded = committed.get();
+        if (null != responded) {
+            responded[0] = true;
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    JSONObject metrics() throws JSONException {
+        return new JSONObject()
+                .put("threads", THREADS)
+                .put("queueCapacity", QUEUE)
+                .put("active", executor.getActiveCount())
+                .put("queueDepth", executor.getQueue().size())
+                .put("maxQueueDepth", maxQueueDepth)
+                .put("completed", executor.getCompletedTaskCount())
+                .put("failed", failed.sum())
+                .put("rejectedBusy", rejectedBusy.sum())
+                .put("rejectedQueueFull", rejectedQueueFull.sum())
+                .put("queueLatency", queueLatency.toJSON())
+                .put("latency", latency.toJSON());
+    }
+
+    static JSONObject error(final String msg) {
+        try {
+            return new JSONObject().put("code", -1).put("msg", null == msg ? "" : msg);
+        } catch (final JSONException e) {
+            return new JSONObject();
+        }
+    }
+
+    private static void reject(final AsyncHttpServerResponse response, final int code, final String msg) {
+        response.getHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+        response.code(code);
+        response.send(error(msg));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.os.SystemClock;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 输入诊断采样.
+ * <p>
+ * 手写笔、触控板的悬停事件按屏幕刷新率到达，逐条记录会占满日志。所有输入事件先在这里计数，
+ * 悬停和 DOM 输入事件只有在前端开启详细采集后才记录，并且每个通道用令牌桶限速，超出部分只计数；
+ * 采集期间每秒记录一条各通道的汇总。未采集时每个事件只有一次计数，几乎没有开销。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class InputDiagnostics {
+
+    /**
+     * 诊断通道.
+     */
+    enum Channel {
+        HOVER("hover", 20, 20, true),
+        DOM("dom", 30, 60, true),
+        DEVICE("device", 5, 10, false);
+
+        final String name;
+        final boolean verboseOnly;
+        private final double ratePerMs;
+        private final double burst;
+        private final LongAdder total = new LongAdder();
+        private final LongAdder logged = new LongAdder();
+        private final LongAdder suppressed = new LongAdder();
+
+        // 以下只在持有通道锁时访问
+        private double tokens;
+        private long lastRefill;
+        private long lastSnapshotTotal;
+        private long lastSummaryTotal;
+
+        /**
+         * @param ratePerSecond 每秒允许记录的条数
+         * @param burst         允许的突发条数
+         * @param verboseOnly   是否只在详细采集时记录
+         */
+        Channel(final String name, final int ratePerSecond, final int burst, final boolean verboseOnly) {
+            this.name = name;
+            this.ratePerMs = ratePerSecond / 1000d;
+            this.burst = burst;
+            this.verboseOnly = verboseOnly;
+            this.tokens = burst;
+        }
+
+        private synchronized boolean tryAcquire(final long now) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerMs);
+            lastRefill = now;
+            if (1 > tokens) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+
+    private static final long SUMMARY_INTERVAL = 1000;
+    private static final long MAX_CAPTURE = 10 * 60 * 1000;
+
+    private static volatile boolean capturing;
+    private static volatile long captureDeadline;
+    private static long lastSummaryTime;
+    private static long lastSnapshotTime = SystemClock.uptimeMillis();
+
+    private InputDiagnostics() {
+    }
+
+    /**
+     * 开启或关闭详细采集，开启后最长持续 {@value #MAX_CAPTURE} 毫秒，避免忘记关闭.
+     */
+    static synchronized void setCapturing(final boolean enabled) {
+        final long now = SystemClock.uptimeMillis();
+        if (enabled && !capturing) {
+            lastSummaryTime = now;
+            for (final Channel channel : Channel.values()) {
+                synchronized (channel) {
+                    channel.lastSummaryTotal = channel.total.sum();
+                }
+            }
+        }
+        captureDeadline = now + MAX_CAPTURE;
+        capturing = enabled;
+        Utils.logInfo("input", "Input diagnostics capture [" + (enabled ? "on" : "off") + "]");
+    }
+
+    static boolean isCapturing() {
+        return capturing && SystemClock.uptimeMillis() < captureDeadline;
+    }
+
+    /**
+     * 统计一个输入事件并判断是否需要记录.
+     *
+     * @return {@code true} 时调用方记录事件详情
+     */
+    static boolean sample(final Channel channel) {
+        channel.total.increment();
+        if (channel.verboseOnly && !capturing) {
+            return false;
+        }
+
+        final long now = SystemClock.uptimeMillis();
+        if (capturing) {
+            if (now >= captureDeadline) {
+                setCapturing(false);
+            } else if (now - lastSummaryTime >= SUMMARY_INTERVAL) {
+                summarize(now);
+            }
+        }
+        if (channel.verboseOnly && !capturing) {
+            return false;
+        }
+
+        if (!channel.tryAcquire(now)) {
+            channel.suppressed.increment();
+            return false;
+        }
+        channel.logged.increment();
+        return true;
+    }
+
+    /**
+     * 各通道的计数，每秒事件数按距上次调用的间隔计算.
+     */
+    static synchronized JSONObject snapshot() throws JSONException {
+        final long now = SystemClock.uptimeMillis();
+        final long elapsed = Math.max(1, now - lastSnapshotTime);
+        lastSnapshotTime = now;
+
+        final JSONObject channels = new JSONObject();
+        for (final Channel channel : Channel.values()) {
+            final long total = channel.total.sum();
+            final long delta;
+            synchronized (channel) {
+                delta = total - channel.lastSnapshotTotal;
+                channel.lastSnapshotTotal = total;
+            }
+            channels.put(channel.name, new JSONObject()
+                    .put("total", total)
+                    .put("perSecond", delta * 1000d / elapsed)
+                    .put("logged", channel.logged.sum())
+                    .put("suppressed", channel.suppressed.sum()));
+        }
+
+        final boolean capture = isCapturing();
+        return new JSONObject()
+                .put("capturing", capture)
+                .put("captureRemainingMs", capture ? captureDeadline - now : 0)
+                .put("channels", channels);
+    }
+
+    private static synchronized void summarize(final long now) {
+        if (now - lastSummaryTime < SUMMARY_INTERVAL) {
+            return;
+        }
+
+        final long window = now - lastSummaryTime;
+        lastSummaryTime = now;
+        final long[] counts = new long[Channel.values().length];
+        long suppressed = 0;
+        for (final Channel channel : Channel.values()) {
+            final long total = channel.total.sum();
+            synchronized (channel) {
+                counts[channel.ordinal()] = total - channel.lastSummaryTotal;
+                channel.lastSummaryTotal = total;
+            }
+            suppressed += channel.suppressed.sum();
+        }
+        EventLog.log(EventLog.Event.INPUT_SUMMARY, window, counts[Channel.HOVER.ordinal()], counts[Channel.DOM.ordinal()],
+                counts[Channel.DEVICE.ordinal()], suppressed);
+    }
+}
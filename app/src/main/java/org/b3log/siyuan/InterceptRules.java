@@ -0,0 +1,376 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import com.blankj.utilcode.util.StringUtils;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import mobile.Mobile;
+
+/**
+ * WebView 请求拦截规则.
+ * <p>
+ * 规则按主机名后缀编译成字典树（按域名标签从右往左），每个请求只需从右往左扫描一遍主机名，匹配时不分配内存。
+ * 内核地址 127.0.0.1:6806 走快速路径，只检查端口和主机名后交给 {@link LocalAssets} 和 {@link StageAssets}，其他回环地址直接放行。
+ * 默认规则之外，可以在工作空间 conf/android-intercept-rules.json 中增加或者覆盖规则（配置只在本机生效，不随 data 同步）：
+ * </p>
+ * <pre>
+ * {"rules": [
+ *   {"host": "qpic.cn", "action": "proxy"},
+ *   {"host": "youtube.com", "action": "referer", "value": "https://b3log.org/siyuan/"},
+ *   {"host": "ads.example.com", "action": "block"},
+ *   {"host": "cdn.example.com", "action": "local", "value": "data/assets/cdn"},
+ *   {"host": "example.org", "action": "none"}
+ * ]}
+ * </pre>
+ * <p>
+ * referer 和 local 必须指定 value，否则忽略该规则；local 的目录为相对工作空间的路径，解析符号链接后必须仍在工作空间内，
+ * 否则忽略该规则，文件不存在时仍然从网络加载；none 用于关闭默认规则。
+ * 规则在内核开始伺服后加载，{@link LocalAssets} 发现切换了工作空间时重新加载。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class InterceptRules {
+
+    private static final String KERNEL_HOST = "127.0.0.1";
+    private static final int KERNEL_PORT = 6806;
+    private static final String CONFIG = "conf/android-intercept-rules.json";
+
+    enum Action {
+        // 放行，用于关闭默认规则
+        NONE,
+        // 改写 Referer 后交给 WebView 加载
+        REFERER,
+        // 由 ProxyClient 代为加载并缓存
+        PROXY,
+        // 从本地目录加载
+        LOCAL,
+        // 拒绝
+        BLOCK
+    }
+
+    static final class Rule {
+        final String host;
+        final Action action;
+        final String value;
+        final LongAdder hits = new LongAdder();
+
+        Rule(final String host, final Action action, final String value) {
+            this.host = host;
+            this.action = action;
+            this.value = value;
+        }
+    }
+
+    private static final class Node {
+        private String[] labels = new String[0];
+        private Node[] children = new Node[0];
+        private Rule rule;
+
+        private Node child(final String host, final int start, final int end) {
+            final int len = end - start;
+            for (int i = 0; i < labels.length; i++) {
+                final String label = labels[i];
+                if (label.length() == len && host.regionMatches(true, start, label, 0, len)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node add(final String label) {
+            final Node existing = child(label, 0, label.length());
+            if (null != existing) {
+                return existing;
+            }
+            final Node node = new Node();
+            final int n = labels.length;
+            final String[] newLabels = new String[n + 1];
+            final Node[] newChildren = new Node[n + 1];
+            System.arraycopy(labels, 0, newLabels, 0, n);
+            System.arraycopy(children, 0, newChildren, 0, n);
+            newLabels[n] = label;
+            newChildren[n] = node;
+            labels = newLabels;
+            children = newChildren;
+            return node;
+        }
+    }
+
+    private static final class Table {
+        private final Node root;
+        private final List<Rule> rules;
+
+        private Table(final Node root, final List<Rule> rules) {
+            this.root = root;
+            this.rules = rules;
+        }
+    }
+
+    private static final LongAdder kernelHits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static volatile Table table = compile(defaults());
+    // 已加载规则的工作空间
+    private static volatile String workspace;
+
+    private InterceptRules() {
+    }
+
+    /**
+     * 按规则处理请求，返回 {@code null} 时由 WebView 自己加载.
+     */
+    static WebResourceResponse intercept(final WebResourceRequest request) {
+        final Uri uri = request.getUrl();
+        final String host = uri.getHost();
+        if (null == host) {
+            return null;
+        }
+        if (KERNEL_PORT == uri.getPort() && KERNEL_HOST.equals(host)) {
+            kernelHits.increment();
+            final WebResourceResponse asset = LocalAssets.intercept(request);
+            return null != asset ? asset : StageAssets.intercept(request);
+        }
+        if (KERNEL_HOST.equals(host) || "localhost".equals(host)) {
+            // 其他本地服务（例如原生 HTTP 服务）不需要拦截
+            return null;
+        }
+
+        final Rule rule = match(table.root, host);
+        if (null == rule) {
+            misses.increment();
+            return null;
+        }
+
+        rule.hits.increment();
+        switch (rule.action) {
+            case REFERER:
+                request.getRequestHeaders().put("Referer", rule.value);
+                return null;
+            case PROXY:
+                if (!"GET".equalsIgnoreCase(request.getMethod())) {
+                    return null;
+                }
+                return ProxyClient.fetch(uri.toString(), request.getRequestHeaders());
+            case LOCAL:
+                return local(rule, uri);
+            case BLOCK:
+                return new WebResourceResponse("text/plain", "UTF-8", 403, "Forbidden", Collections.emptyMap(),
+                        new ByteArrayInputStream(new byte[0]));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 从工作空间加载规则，配置文件不存在或者有误时只使用默认规则.
+     */
+    static synchronized void load() {
+        final Map<String, Rule> rules = new LinkedHashMap<>();
+        for (final Rule rule : defaults()) {
+            rules.put(rule.host, rule);
+        }
+
+        final String workspacePath = Mobile.getCurrentWorkspacePath();
+        workspace = workspacePath;
+        final File config = StringUtils.isEmpty(workspacePath) ? null : new File(workspacePath, CONFIG);
+        if (null != config && config.isFile()) {
+            try {
+                final JSONObject configJSON = new JSONObject(FileUtils.readFileToString(config, StandardCharsets.UTF_8));
+                final JSONArray array = configJSON.optJSONArray("rules");
+                for (int i = 0; null != array && i < array.length(); i++) {
+                    final JSONObject ruleJSON = array.getJSONObject(i);
+                    final String host = normalize(ruleJSON.optString("host"));
+                    if (host.isEmpty()) {
+                        continue;
+                    }
+                    final Action action = Action.valueOf(ruleJSON.optString("action", "none").toUpperCase(Locale.ROOT));
+                    String value = ruleJSON.optString("value", null);
+                    if ((Action.REFERER == action || Action.LOCAL == action) && StringUtils.isTrimEmpty(value)) {
+                        Utils.logInfo("webview", "Skip intercept rule [" + host + "] without value");
+                        continue;
+                    }
+                    if (Action.LOCAL == action) {
+                        value = localDir(workspacePath, value);
+                        if (null == value) {
+                            Utils.logInfo("webview", "Skip intercept rule [" + host + "] with dir outside workspace");
+                            continue;
+                        }
+                    }
+                    rules.put(host, new Rule(host, action, value));
+                }
+            } catch (final Exception e) {
+                Utils.logError("webview", "load intercept rules [" + config + "] failed, use default rules", e);
+                rules.clear();
+                for (final Rule rule : defaults()) {
+                    rules.put(rule.host, rule);
+                }
+            }
+        }
+
+        table = compile(new ArrayList<>(rules.values()));
+        Utils.logInfo("webview", "Loaded [" + rules.size() + "] intercept rules");
+    }
+
+    /**
+     * 当前工作空间和加载规则时不同时在后台重新加载.
+     */
+    static void workspaceChanged(final String workspacePath) {
+        if (workspacePath.equals(workspace)) {
+            return;
+        }
+        workspace = workspacePath;
+        new Thread(InterceptRules::load, "InterceptRules").start();
+    }
+
+    static JSONObject stats() throws JSONException {
+        final JSONObject rulesJSON = new JSONObject();
+        for (final Rule rule : table.rules) {
+            rulesJSON.put(rule.host, new JSONObject()
+                    .put("action", rule.action.name().toLowerCase(Locale.ROOT))
+                    .put("hits", rule.hits.sum()));
+        }
+        return new JSONObject()
+                .put("kernel", kernelHits.sum())
+                .put("misses", misses.sum())
+                .put("rules", rulesJSON);
+    }
+
+    private static List<Rule> defaults() {
+        final List<Rule> ret = new ArrayList<>();
+        // YouTube 设置 Referer https://github.com/siyuan-note/siyuan/issues/16319
+        ret.add(new Rule("youtube.com", Action.REFERER, "https://b3log.org/siyuan/"));
+        ret.add(new Rule("youtube-nocookie.com", Action.REFERER, "https://b3log.org/siyuan/"));
+        // 改进公众号图片加载 https://github.com/siyuan-note/siyuan/issues/16326
+        ret.add(new Rule("qpic.cn", Action.PROXY, null));
+        return ret;
+    }
+
+    private static Table compile(final List<Rule> rules) {
+        final Node root = new Node();
+        for (final Rule rule : rules) {
+            Node node = root;
+            final String[] labels = rule.host.split("\\.");
+            for (int i = labels.length - 1; 0 <= i; i--) {
+                node = node.add(labels[i]);
+            }
+            node.rule = rule;
+        }
+        return new Table(root, Collections.unmodifiableList(new ArrayList<>(rules)));
+    }
+
+    /**
+     * 匹配最长的主机名后缀，只在域名标签边界上匹配.
+     */
+    private static Rule match(final Node root, final String host) {
+        Rule ret = null;
+        Node node = root;
+        int end = host.length();
+        if (0 < end && '.' == host.charAt(end - 1)) {
+            end--;
+        }
+        while (0 < end) {
+            final int dot = host.lastIndexOf('.', end - 1);
+            node = node.child(host, dot + 1, end);
+            if (null == node) {
+                break;
+            }
+            if (null != node.rule) {
+                ret = node.rule;
+            }
+            end = dot;
+        }
+        return null == ret || Action.NONE == ret.action ? null : ret;
+    }
+
+    /**
+     * 解析 local 规则的目录，返回规范路径，不在工作空间内时返回 {@code null}.
+     */
+    private static String localDir(final String workspacePath, final String value) throws IOException {
+        final File workspaceDir = new File(workspacePath).getCanonicalFile();
+        final File dir = new File(workspaceDir, value).getCanonicalFile();
+        return isUnder(dir, workspaceDir) ? dir.getPath() : null;
+    }
+
+    private static boolean isUnder(final File file, final File dir) {
+        return file.getPath().startsWith(dir.getPath() + File.separator);
+    }
+
+    private static WebResourceResponse local(final Rule rule, final Uri uri) {
+        final String path = uri.getPath();
+        if (null == rule.value || null == path || path.contains("..")) {
+            return null;
+        }
+
+        final File file;
+        try {
+            // 解析符号链接，防止通过链接读取目录外的文件
+            file = new File(rule.value, path).getCanonicalFile();
+        } catch (final IOException e) {
+            return null;
+        }
+        if (!isUnder(file, new File(rule.value)) || !file.isFile()) {
+            return null;
+        }
+
+        final InputStream data;
+        try {
+            data = new FileInputStream(file);
+        } catch (final IOException e) {
+            return null;
+        }
+        final Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Length", String.valueOf(file.length()));
+        final String mimeType = Mobile.getMimeTypeByExt(file.getName());
+        return new WebResourceResponse(StringUtils.isEmpty(mimeType) ? "application/octet-stream" : mimeType, null, 200, "OK",
+                headers, data);
+    }
+
+    private static String normalize(final String host) {
+        String ret = host.trim().toLowerCase(Locale.ROOT);
+        while (ret.startsWith("*.") || ret.startsWith(".")) {
+            ret = ret.substring(ret.startsWith("*.") ? 2 : 1);
+        }
+        return ret;
+    }
+}
@@ -41,6 +41,7 @@ import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.provider.OpenableColumns;
 import android.provider.Settings;
+import android.text.TextUtils;
 import android.util.Log;
 import android.webkit.JavascriptInterface;
 import android.webkit.WebView;
@@ -75,7 +76,7 @@ import mobile.Mobile;
  *
  * @author <a href="https://88250.b3log.org">Liang Ding</a>
  * @author <a href="https://github.com/Soltus">绛亽</a>
- * @version 1.6.0.8, Aug 3, 2026
+ * @version 1.7.3.0, Oct 17, 2026
  * @since 1.0.0
  */
 public final class JSAndroid {
@@ -116,10 +117,84 @@ public final class JSAndroid {
 
     @JavascriptInterface
     public void logInputEvent(final String details) {
-        if (StringUtils.isEmpty(details)) {
+        if (!InputDiagnostics.sample(InputDiagnostics.Channel.DOM) || StringUtils.isEmpty(details)) {
             return;
         }
-        Utils.logInfo("input", "DOM input event [" + details.substring(0, Math.min(details.length(), 2048)) + "]");
+        EventLog.log(EventLog.Event.DOM_INPUT, details);
+    }
+
+    @JavascriptInterface
+    public void setInputCapture(final boolean enabled) {
+        InputDiagnostics.setCapturing(enabled);
+    }
+
+    @JavascriptInterface
+    public boolean isInputCapturing() {
+        return InputDiagnostics.isCapturing();
+    }
+
+    @JavascriptInterface
+    public String getInputDiagnostics() {
+        try {
+            return InputDiagnostics.snapshot().toString();
+        } catch (final Exception e) {
+            Utils.logError("JSAndroid", "get input diagnostics failed", e);
+            return "{}";
+        }
+    }
+
+    @JavascriptInterface
+    public String getHttpServerMetrics() {
+        final NativeRoutes routes = activity.httpRoutes;
+        if (null == routes) {
+            return "{}";
+        }
+        try {
+            return routes.metrics().toString();
+        } catch (final Exception e) {
+            Utils.logError("JSAndroid", "get http server metrics failed", e);
+            return "{}";
+        }
+    }
+
+    @JavascriptInterface
+    public String getInterceptStats() {
+        try {
+            return InterceptRules.stats().toString();
+        } catch (final Exception e) {
+            Utils.logError("JSAndroid", "get intercept stats failed", e);
+            return "{}";
+        }
+    }
+
+    @JavascriptInterface
+    public void reloadInterceptRules() {
+        new Thread(InterceptRules::load, "InterceptRules").start();
+    }
+
+    @JavascriptInterface
+    public String getEventLogTail(final int lines) {
+        return TextUtils.join("\n", EventLog.tail(lines));
+    }
+
+    @JavascriptInterface
+    public String getStartupStats() {
+        try {
+            return StartupTracer.stats().toString();
+        } catch (final Exception e) {
+            Utils.logError("JSAndroid", "get startup stats failed", e);
+            return "{}";
+        }
+    }
+
+    @JavascriptInterface
+    public String getMobileLogTail(final int lines) {
+        return TextUtils.join("\n", MobileLog.tail(lines));
+    }
+
+    @JavascriptInterface
+    public String getMobileLogWindow(final long from, final long to) {
+        return TextUtils.join("\n", MobileLog.window(from, to));
     }
 
     @JavascriptInterface
@@ -0,0 +1,127 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import mobile.Mobile;
+
+/**
+ * 内核 HTTP 服务就绪探测.
+ * <p>
+ * 在后台线程上以指数退避（5ms 起，最长 200ms）探测 {@link Mobile#isHttpServing()}，就绪后完成 {@link #ready()}
+ * 返回的 future；内核启动线程报告失败或超过期限时以异常完成，调用方据此展示错误而不是一直转圈。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class KernelReadiness {
+
+    private static final long INITIAL_INTERVAL = 5;
+    private static final long MAX_INTERVAL = 200;
+    private static final long TIMEOUT = 60 * 1000;
+
+    private static final Object lock = new Object();
+    private static CompletableFuture<Void> ready;
+    private static String failure;
+
+    private KernelReadiness() {
+    }
+
+    /**
+     * 获取内核就绪 future，首次调用或上次探测结束后内核已不再伺服时启动新的探测.
+     */
+    static CompletableFuture<Void> ready() {
+        synchronized (lock) {
+            if (null != ready && (!ready.isDone() || (!ready.isCompletedExceptionally() && Mobile.isHttpServing()))) {
+                return ready;
+            }
+
+            if (null != ready && ready.isCompletedExceptionally()) {
+                failure = null;
+            }
+            ready = new CompletableFuture<>();
+            final CompletableFuture<Void> future = ready;
+            new Thread(() -> probe(future), "KernelReadiness").start();
+            return future;
+        }
+    }
+
+    /**
+     * 内核启动线程开始启动内核前调用，清除上一次的失败原因.
+     */
+    static void starting() {
+        synchronized (lock) {
+            failure = null;
+        }
+    }
+
+    /**
+     * 内核启动失败时由启动线程调用，立即结束正在进行的探测.
+     */
+    static void fail(final String reason) {
+        synchronized (lock) {
+            failure = reason;
+            lock.notifyAll();
+        }
+    }
+
+    private static void probe(final CompletableFuture<Void> future) {
+        final long start = SystemClock.elapsedRealtime();
+        final long deadline = start + TIMEOUT;
+        long interval = INITIAL_INTERVAL;
+        int probes = 0;
+        while (true) {
+            probes++;
+            if (Mobile.isHttpServing()) {
+                BootTimeline.mark(BootTimeline.HTTP_READY);
+                Utils.logInfo("boot", "Kernel HTTP server is serving after [" + probes + "] probes in ["
+                        + (SystemClock.elapsedRealtime() - start) + "] ms");
+                future.complete(null);
+                return;
+            }
+
+            synchronized (lock) {
+                if (null != failure) {
+                    future.completeExceptionally(new IllegalStateException(failure));
+                    return;
+                }
+
+                final long now = SystemClock.elapsedRealtime();
+                if (now >= deadline) {
+                    future.completeExceptionally(new TimeoutException("kernel HTTP server is not serving after [" + TIMEOUT + "] ms"));
+                    return;
+                }
+
+                try {
+                    lock.wait(Math.min(interval, deadline - now));
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(e);
+                    return;
+                }
+            }
+            interval = Math.min(interval * 2, MAX_INTERVAL);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ServiceInfo;
@@ -49,16 +50,26 @@ import mobile.Mobile;
  * or the screen is off by holding a partial WakeLock and a WifiLock,
  * running as a foreground service with a minimal silent notification.
  * </p>
+ * <p>
+ * 内核由该服务持有，主界面销毁重建时不再退出内核。没有主界面附着时按空闲时长和内存压力决定是否退出内核：
+ * 空闲超过 {@link #IDLE_TIMEOUT} 毫秒（未开启保活通知时）或者系统内存严重不足时退出。
+ * </p>
  *
  * @author <a href="https://88250.b3log.org">Liang Ding</a>
  * @author <a href="https://github.com/fayaz-modz">Fayaz Mohammad</a>
- * @version 1.0.0.1, Jul 3, 2026
+ * @version 1.1.0.1, Oct 17, 2026
  * @since 3.1.0
  */
 public class KernelService extends Service {
 
     private static final String CHANNEL_ID = "siyuan_kernel_channel";
     private static final int NOTIFICATION_ID = 19860;
+    private static final long IDLE_TIMEOUT = 10 * 60 * 1000;
+
+    private static final Handler idleHandler = new Handler(Looper.getMainLooper());
+    private static final Runnable idleShutdown = () -> shutdown("idle for [" + IDLE_TIMEOUT + "] ms");
+    private static Context appContext;
+    private static int attachedActivities;
 
     private PowerManager.WakeLock wakeLock;
     private WifiManager.WifiLock wifiLock;
@@ -113,6 +124,20 @@ public class KernelService extends Service {
         return null;
     }
 
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+        if (ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL != level && ComponentCallbacks2.TRIM_MEMORY_COMPLETE > level) {
+            return;
+        }
+
+        idleHandler.post(() -> {
+            if (0 == attachedActivities) {
+                shutdown("memory pressure [" + level + "]");
+            }
+        });
+    }
+
     @Override
     public void onDestroy() {
         unregisterNetworkCallback();
@@ -122,6 +147,45 @@ public class KernelService extends Service {
         super.onDestroy();
     }
 
+    /**
+     * 主界面创建时调用，取消待执行的空闲退出.
+     */
+    static void attach(final Context context) {
+        idleHandler.post(() -> {
+            appContext = context.getApplicationContext();
+            attachedActivities++;
+            idleHandler.removeCallbacks(idleShutdown);
+        });
+    }
+
+    /**
+     * 主界面销毁时调用，没有主界面附着后开始计算空闲时长，开启保活通知时内核一直常驻.
+     */
+    static void detach() {
+        idleHandler.post(() -> {
+            attachedActivities = Math.max(0, attachedActivities - 1);
+            if (0 == attachedActivities && !KeepLiveService.isKeepLiveEnabled()) {
+                idleHandler.removeCallbacks(idleShutdown);
+                idleHandler.postDelayed(idleShutdown, IDLE_TIMEOUT);
+            }
+        });
+    }
+
+    private static void shutdown(final String reason) {
+        Utils.logInfo("kernel-service", "Shutdown kernel, reason [" + reason + "]");
+        if (null != appContext) {
+            // 先停止服务，避免 START_STICKY 在进程退出后重启一个没有内核的服务
+            appContext.stopService(new Intent(appContext, KernelService.class));
+        }
+
+        MobileLog.flush();
+        try {
+            Mobile.exit();
+        } catch (final Exception e) {
+            Utils.logError("kernel-service", "exit kernel failed", e);
+        }
+    }
+
     /**
      * Create a low-importance notification channel so the notification is
      * silent, has no badge, and is minimally visible.
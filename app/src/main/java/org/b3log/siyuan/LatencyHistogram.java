@@ -0,0 +1,102 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时分布.
+ * <p>
+ * 按固定的毫秒边界分桶计数，记录时无锁，分位数按桶上界估算。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class LatencyHistogram {
+
+    private static final long[] BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile long max;
+
+    void record(final long millis) {
+        int i = 0;
+        while (i < BOUNDS.length && millis > BOUNDS[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        count.increment();
+        sum.add(millis);
+        if (millis > max) {
+            max = millis;
+        }
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * 估算分位数，返回所在桶的上界，超过最大边界时返回观测到的最大值.
+     */
+    long percentile(final double p) {
+        final long total = count.sum();
+        if (0 == total) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(total * p);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(BOUNDS[i], max);
+            }
+        }
+        return max;
+    }
+
+    JSONObject toJSON() throws JSONException {
+        final long total = count.sum();
+        final JSONArray counts = new JSONArray();
+        for (int i = 0; i < buckets.length(); i++) {
+            counts.put(buckets.get(i));
+        }
+        final JSONArray bounds = new JSONArray();
+        for (final long bound : BOUNDS) {
+            bounds.put(bound);
+        }
+        return new JSONObject()
+                .put("count", total)
+                .put("meanMs", 0 == total ? 0 : sum.sum() / (double) total)
+                .put("p50Ms", percentile(0.5))
+                .put("p99Ms", percentile(0.99))
+                .put("maxMs", max)
+                .put("boundsMs", bounds)
+                .put("buckets", counts);
+    }
+}
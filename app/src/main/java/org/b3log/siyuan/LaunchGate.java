@@ -0,0 +1,103 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
+
+/**
+ * 启动分派.
+ * <p>
+ * 用户协议是否已确认缓存在偏好设置中，确认过之后启动时不再读取清单元数据和检查 files/app，
+ * 引导界面和块链接入口可以直接拉起主界面。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.1, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class LaunchGate {
+
+    private static final String PREFS = "launch";
+    private static final String KEY_AGREEMENT_SETTLED = "agreementSettled";
+
+    private LaunchGate() {
+    }
+
+    /**
+     * 是否需要展示用户协议，只有 cn、huawei 渠道包首次运行时需要.
+     */
+    static boolean needAgreement(final Context context) {
+        final SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(KEY_AGREEMENT_SETTLED, false)) {
+            return false;
+        }
+
+        final AppEnvironment env = AppEnvironment.get();
+        final boolean agreementChannel = "cn".equals(env.channel) || env.isHuaweiChannel();
+        if (agreementChannel && !env.appDir.exists()) {
+            return true;
+        }
+
+        // 不需要协议的渠道或者之前已经确认过（外观已解压），缓存下来后续启动走快速路径
+        agreementSettled(context);
+        return false;
+    }
+
+    /**
+     * 用户同意协议后调用.
+     */
+    static void agreementSettled(final Context context) {
+        context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit().putBoolean(KEY_AGREEMENT_SETTLED, true).apply();
+    }
+
+    /**
+     * 从 siyuan:// 链接意图中取出块链接，没有则返回空字符串.
+     */
+    static String getBlockURL(final Intent intent) {
+        if (null == intent) {
+            return "";
+        }
+
+        try {
+            final Uri blockURLUri = intent.getData();
+            if (null != blockURLUri && blockURLUri.toString().toLowerCase().startsWith("siyuan://")) {
+                Utils.logInfo("boot", "Block URL [" + blockURLUri + "]");
+                return blockURLUri.toString();
+            }
+        } catch (final Exception e) {
+            Utils.logError("boot", "gets block URL failed", e);
+        }
+        return "";
+    }
+
+    /**
+     * 构造拉起主界面的意图，主界面已在任务栈中时复用而不是新建.
+     */
+    static Intent mainIntent(final Context context, final String blockURL) {
+        final Intent ret = new Intent(context.getApplicationContext(), MainActivity.class);
+        // 若 MainActivity 已在任务栈中则将其拉到栈顶复用，不创建新实例，避免重复创建 WebView 和重新加载界面
+        ret.addFlags(Intent.FLAG_ACTIVITY_REORDER_TO_FRONT | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        if (!blockURL.isEmpty()) {
+            ret.putExtra("blockURL", blockURL);
+        }
+        return ret;
+    }
+}
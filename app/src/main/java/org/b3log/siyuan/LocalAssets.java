@@ -0,0 +1,291 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import com.blankj.utilcode.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import mobile.Mobile;
+
+/**
+ * 本地伺服工作空间资源文件.
+ * <p>
+ * 文档中的图片、音视频等 /assets/ 资源就在本进程的工作空间目录下，由 WebView 拦截请求直接从磁盘返回，
+ * 不再经过回环地址请求内核 HTTP 服务。资源路径第一次通过内核解析后缓存，之后不再调用内核。
+ * 小文件和较小的分段通过内存映射读取，大文件按需从文件通道读取；支持单个 Range 分段请求，音视频可以拖动进度。
+ * 图片请求带 thumb 参数时返回 {@link AssetThumbnails} 生成的缩略图。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class LocalAssets {
+
+    private static final String ASSETS_PREFIX = "/assets/";
+    private static final int MAX_PATHS = 1024;
+    private static final long MMAP_MAX = 8L * 1024 * 1024;
+
+    private static String pathsWorkspace;
+    // 请求路径 -> 资源文件，按访问顺序淘汰
+    private static final LinkedHashMap<String, File> paths = new LinkedHashMap<String, File>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, File> eldest) {
+            return MAX_PATHS < size();
+        }
+    };
+
+    private LocalAssets() {
+    }
+
+    /**
+     * 拦截对内核 /assets/ 资源的请求，无法本地伺服时返回 {@code null} 交给内核处理.
+     */
+    static WebResourceResponse intercept(final WebResourceRequest request) {
+        final String path = request.getUrl().getPath();
+        if (null == path || !path.startsWith(ASSETS_PREFIX) || !"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+
+        final File file = resolve(path);
+        if (null == file) {
+            return null;
+        }
+
+        final long length = file.length();
+        final String mimeType = mimeType(file.getName());
+        final String encoding = mimeType.startsWith("text/") ? "UTF-8" : null;
+        final Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Ranges", "bytes");
+        headers.put("Access-Control-Allow-Origin", "*");
+        headers.put("Cache-Control", "no-cache");
+
+        final String range = header(request.getRequestHeaders(), "Range");
+        final String thumb = request.getUrl().getQueryParameter(AssetThumbnails.PARAM);
+        if (null != thumb && null == range) {
+            // 带尺寸提示的图片返回缩略图
+            final WebResourceResponse thumbnail = AssetThumbnails.serve(file, mimeType, thumb);
+            if (null != thumbnail) {
+                return thumbnail;
+            }
+        }
+
+        long start = 0;
+        long end = length - 1;
+        final boolean partial = null != range;
+        if (partial) {
+            final long[] r = parseRange(range, length);
+            if (null == r) {
+                headers.put("Content-Range", "bytes */" + length);
+                return new WebResourceResponse(mimeType, encoding, 416, "Range Not Satisfiable", headers,
+                        new ByteArrayInputStream(new byte[0]));
+            }
+            start = r[0];
+            end = r[1];
+            headers.put("Content-Range", "bytes " + start + "-" + end + "/" + length);
+        }
+        final long count = end - start + 1;
+        headers.put("Content-Length", String.valueOf(Math.max(0, count)));
+
+        final InputStream data;
+        try {
+            data = open(file, start, Math.max(0, count));
+        } catch (final IOException e) {
+            Utils.logError("webview", "open asset [" + file + "] failed", e);
+            invalidate(path);
+            return null;
+        }
+        return partial
+                ? new WebResourceResponse(mimeType, encoding, 206, "Partial Content", headers, data)
+                : new WebResourceResponse(mimeType, encoding, 200, "OK", headers, data);
+    }
+
+    /**
+     * 解析资源文件，结果按请求路径缓存；文件不存在时返回 {@code null}.
+     */
+    static File resolve(final String path) {
+        final String workspacePath = Mobile.getCurrentWorkspacePath();
+        if (StringUtils.isEmpty(workspacePath)) {
+            return null;
+        }
+
+        synchronized (paths) {
+            if (!workspacePath.equals(pathsWorkspace)) {
+                // 切换了工作空间，拦截规则也按工作空间配置
+                paths.clear();
+                pathsWorkspace = workspacePath;
+                InterceptRules.workspaceChanged(workspacePath);
+            }
+            final File cached = paths.get(path);
+            if (null != cached) {
+                if (cached.isFile()) {
+                    return cached;
+                }
+                paths.remove(path);
+            }
+        }
+
+        final String relativePath = path.substring(1);
+        if (relativePath.contains("..")) {
+            return null;
+        }
+        File file;
+        try {
+            final String assetAbsPath = Mobile.getAssetAbsPath(relativePath);
+            file = assetAbsPath.startsWith(workspacePath)
+                    ? new File(assetAbsPath) : new File(workspacePath, "data/" + relativePath);
+        } catch (final Exception e) {
+            file = new File(workspacePath, "data/" + relativePath);
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+
+        synchronized (paths) {
+            if (workspacePath.equals(pathsWorkspace)) {
+                paths.put(path, file);
+            }
+        }
+        return file;
+    }
+
+    static String mimeType(final String name) {
+        final String ret = Mobile.getMimeTypeByExt(name);
+        return StringUtils.isEmpty(ret) ? "application/octet-stream" : ret;
+    }
+
+    private static void invalidate(final String path) {
+        synchronized (paths) {
+            paths.remove(path);
+        }
+    }
+
+    private static InputStream open(final File file, final long start, final long count) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            if (count <= MMAP_MAX) {
+                // 映射在通道关闭后仍然有效
+                final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, count);
+                raf.close();
+                return new StageAssets.ByteBufferInputStream(buffer);
+            }
+            channel.position(start);
+            return new BoundedInputStream(Channels.newInputStream(channel), count);
+        } catch (final IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 解析单个分段，返回 [start, end]，不能满足时返回 {@code null}；多个分段时只返回第一个.
+     */
+    static long[] parseRange(final String range, final long length) {
+        final String value = range.trim();
+        if (!value.startsWith("bytes=") || 0 >= length) {
+            return null;
+        }
+        String spec = value.substring("bytes=".length());
+        final int comma = spec.indexOf(',');
+        if (0 <= comma) {
+            spec = spec.substring(0, comma);
+        }
+        final int dash = spec.indexOf('-');
+        if (0 > dash) {
+            return null;
+        }
+
+        try {
+            final String first = spec.substring(0, dash).trim();
+            final String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // bytes=-500 表示最后 500 字节
+                final long suffix = Long.parseLong(last);
+                return 0 >= suffix ? null : new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            final long start = Long.parseLong(first);
+            final long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            return start > end || start >= length ? null : new long[]{start, end};
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String header(final Map<String, String> headers, final String name) {
+        for (final Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        private BoundedInputStream(final InputStream in, final long remaining) {
+            this.in = in;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (0 >= remaining) {
+                return -1;
+            }
+            final int b = in.read();
+            if (-1 != b) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (0 >= remaining) {
+                return -1;
+            }
+            final int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (0 < n) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -34,8 +34,6 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.Message;
-import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.provider.Settings;
 import android.util.Log;
@@ -83,26 +81,19 @@ import com.koushikdutta.async.http.server.AsyncHttpServer;
 import com.koushikdutta.async.util.Charsets;
 import com.zackratos.ultimatebarx.ultimatebarx.java.UltimateBarX;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.InputStream;
 import java.lang.reflect.Field;
-import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.ServerSocket;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import mobile.Mobile;
 
@@ -110,21 +101,23 @@ import mobile.Mobile;
  * 主程序.
  *
  * @author <a href="https://88250.b3log.org">Liang Ding</a>
- * @version 1.2.0.4, Aug 3, 2026
+ * @version 1.5.6.0, Oct 17, 2026
  * @since 1.0.0
  */
 public class MainActivity extends AppCompatActivity implements com.blankj.utilcode.util.Utils.OnAppStatusChangedListener,
         InputManager.InputDeviceListener {
 
     private AsyncHttpServer server;
+    private AsyncServer httpReactor;
+    private HttpWorkers httpWorkers;
+    volatile NativeRoutes httpRoutes;
     WebView webView;
     private ImageView bootLogo;
     private ProgressBar bootProgressBar;
     private TextView bootDetailsText;
     private InputManager inputManager;
     private ActionMode webViewActionMode;
-    private final Map<Integer, String> inputDeviceDetails = new HashMap<>();
-    private long lastHoverMoveLogTime;
+    private final Map<Integer, long[]> inputDeviceDetails = new HashMap<>();
     private volatile boolean appStatusSyncEnabled;
 
     private ValueCallback<Uri[]> uploadMessage;
@@ -134,7 +127,7 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
     private static final String SIYUAN_WEBVIEW_SCHEME = "http";
     private static final String SIYUAN_WEBVIEW_HOST = "127.0.0.1";
     private static final int SIYUAN_WEBVIEW_PORT = 6806;
-    private static final long HOVER_MOVE_LOG_INTERVAL = 250;
+    private static final int WALK_DIR_MAX_INFLIGHT = 2;
     private PermissionRequest pendingAudioPermissionRequest;
     private AlertDialog microphonePermissionDialog;
     private JSAndroid jsAndroid;
@@ -153,15 +146,13 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
             });
 
     static int serverPort = 6906;
-    static String webViewVer;
-    static String userAgent;
+    private static boolean coldStart = true;
 
     @Override
     public void onNewIntent(final Intent intent) {
         super.onNewIntent(intent);
         setIntent(intent);
-        Utils.logInfo("boot", "Receive main activity intent, process [" + android.os.Process.myPid()
-                + "], instance [" + System.identityHashCode(this) + "], task [" + getTaskId() + "]");
+        EventLog.log(EventLog.Event.MAIN_NEW_INTENT, android.os.Process.myPid(), System.identityHashCode(this), getTaskId());
 
         if (null == intent || null == webView) {
             return;
@@ -187,9 +178,7 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
     @Override
     public void onConfigurationChanged(final Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
-        Utils.logInfo("boot", "Change main activity configuration, process [" + android.os.Process.myPid()
-                + "], instance [" + System.identityHashCode(this) + "], task [" + getTaskId()
-                + "], configuration [" + Utils.formatInputConfiguration(newConfig) + "]");
+        EventLog.logConfiguration(EventLog.Event.MAIN_CONFIGURATION, System.identityHashCode(this), getTaskId(), newConfig);
     }
 
     @Override
@@ -204,9 +193,15 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
 
     @Override
     public void onInputDeviceRemoved(final int deviceId) {
-        final String details = inputDeviceDetails.remove(deviceId);
-        Utils.logInfo("input", "Remove input device, id [" + deviceId + "], details ["
-                + (null == details ? "unavailable" : details) + "]");
+        final long[] details = inputDeviceDetails.remove(deviceId);
+        if (!InputDiagnostics.sample(InputDiagnostics.Channel.DEVICE)) {
+            return;
+        }
+        if (null == details) {
+            EventLog.log(EventLog.Event.INPUT_DEVICE_UNAVAILABLE, "Remove", deviceId);
+            return;
+        }
+        EventLog.log(EventLog.Event.INPUT_DEVICE, "Remove", deviceId, details[0], details[1], details[2], details[3]);
     }
 
     @Override
@@ -236,9 +231,13 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        Utils.logInfo("boot", "Create main activity, process [" + android.os.Process.myPid()
-                + "], instance [" + System.identityHashCode(this) + "], task [" + getTaskId()
-                + "], saved state [" + (null != savedInstanceState) + "]");
+        StartupTracer.session(coldStart);
+        StartupTracer.begin(StartupTracer.Span.MAIN_ACTIVITY);
+        KernelService.attach(this);
+        EventLog.log(EventLog.Event.MAIN_CREATE, android.os.Process.myPid(), System.identityHashCode(this), getTaskId(),
+                null != savedInstanceState ? 1 : 0);
+        BootTimeline.reset(coldStart);
+        coldStart = false;
         setContentView(R.layout.activity_main);
         registerInputDeviceListener();
 
@@ -251,22 +250,34 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
             getOnBackInvokedDispatcher().registerOnBackInvokedCallback(OnBackInvokedDispatcher.PRIORITY_DEFAULT, this::goBack);
         }
 
-        // 启动 HTTP Server
-        startHttpServer();
-
         // 初始化 UI 元素
         initUIElements();
 
-        // 拉起内核
-        startKernel();
-
-        // 初始化外观资源
-        initAppearance();
+        // 按依赖关系并发执行启动阶段：本地 HTTP 服务、外观资源和 WebView 初始化互不依赖，
+        // 拉起内核依赖 HTTP 服务端口和外观资源，加载启动页依赖内核和 WebView
+        new BootScheduler(bootHandler)
+                .background("httpServer", this::startHttpServer)
+                .background("appearance", this::initAppearance)
+                .optional("stageAssets", () -> StageAssets.preload(AppEnvironment.get().appDir), "appearance")
+                .optional("proxyCache", () -> ProxyCache.open(new File(getCacheDir(), "proxy")))
+                .optional("thumbnails", () -> AssetThumbnails.open(new File(getCacheDir(), "thumbs")))
+                .main("webView", this::showBootIndex)
+                .background("kernel", this::bootKernel, "httpServer", "appearance")
+                .main("kernelReady", this::waitForKernelHttpServing, "kernel", "webView")
+                .optional("interceptRules", () -> {
+                    // 规则在工作空间下，内核开始伺服后才能取得工作空间路径
+                    KernelReadiness.ready().join();
+                    InterceptRules.load();
+                }, "kernelReady")
+                .start((stage, e) -> {
+                    Utils.logError("boot", "boot stage [" + stage + "] failed, exit application", e);
+                    exit();
+                });
 
         AppUtils.registerAppStatusChangedListener(this);
 
         // 使用 Chromium 调试 WebView
-        if (Utils.isDebugPackageAndMode(this)) {
+        if (AppEnvironment.get().debug) {
             this.setWebViewDebuggable(true);
         }
 
@@ -288,6 +299,7 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
 
         // Fix https://github.com/siyuan-note/siyuan/issues/9726
         AndroidBug5497Workaround.assistActivity(this);
+        StartupTracer.end(StartupTracer.Span.MAIN_ACTIVITY);
     }
 
     private void registerInputDeviceListener() {
@@ -306,16 +318,21 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
         }
 
         final InputDevice device = inputManager.getInputDevice(deviceId);
+        final boolean sampled = InputDiagnostics.sample(InputDiagnostics.Channel.DEVICE);
         if (null == device) {
-            Utils.logInfo("input", action + " input device, id [" + deviceId + "], details [unavailable]");
+            if (!sampled) {
+                return;
+            }
+            EventLog.log(EventLog.Event.INPUT_DEVICE_UNAVAILABLE, action, deviceId);
             return;
         }
 
-        final String details = "sources [0x" + Integer.toHexString(device.getSources()) + "], keyboard type ["
-                + device.getKeyboardType() + "], external [" + device.isExternal() + "], virtual ["
-                + device.isVirtual() + "]";
+        final long[] details = {device.getSources(), device.getKeyboardType(), device.isExternal() ? 1 : 0, device.isVirtual() ? 1 : 0};
         inputDeviceDetails.put(deviceId, details);
-        Utils.logInfo("input", action + " input device, id [" + deviceId + "], details [" + details + "]");
+        if (!sampled) {
+            return;
+        }
+        EventLog.log(EventLog.Event.INPUT_DEVICE, action, deviceId, details[0], details[1], details[2], details[3]);
     }
 
     @SuppressLint("ClickableViewAccessibility")
@@ -350,21 +367,16 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
             return false;   // 不消费事件，保证 WebView 正常滚动/点击
         });
 
-        final WebSettings ws = webView.getSettings();
-        checkWebViewVer(ws);
-        userAgent = ws.getUserAgentString();
-        Log.i("boot", "User agent [" + userAgent + "]");
+        // WebView 信息在后台线程上解析，不能在主线程上等待
+        AppEnvironment.webView().thenAccept(info -> runOnUiThread(() -> checkWebViewVer(info.version)));
     }
 
     private void logHoverEvent(final MotionEvent event) {
-        final int action = event.getActionMasked();
-        final long now = SystemClock.uptimeMillis();
-        if (MotionEvent.ACTION_HOVER_MOVE == action && now - lastHoverMoveLogTime < HOVER_MOVE_LOG_INTERVAL) {
+        if (!InputDiagnostics.sample(InputDiagnostics.Channel.HOVER)) {
             return;
         }
-        if (MotionEvent.ACTION_HOVER_MOVE == action) {
-            lastHoverMoveLogTime = now;
-        }
+
+        final int action = event.getActionMasked();
         if (0 == event.getPointerCount()) {
             return;
         }
@@ -373,12 +385,9 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
             pointerIndex = 0;
         }
         final int toolType = event.getToolType(pointerIndex);
-        Utils.logInfo("input", "Native hover event [action=" + MotionEvent.actionToString(action) + "(" + action
-                + "), tool=" + toolType + ", source=0x" + Integer.toHexString(event.getSource())
-                + ", buttons=0x" + Integer.toHexString(event.getButtonState()) + ", pressure="
-                + event.getPressure(pointerIndex) + ", pointer=" + event.getPointerId(pointerIndex) + ", device="
-                + event.getDeviceId() + ", position=(" + Math.round(event.getX(pointerIndex)) + ","
-                + Math.round(event.getY(pointerIndex)) + ")]");
+        EventLog.log(EventLog.Event.HOVER, action, action, toolType, event.getSource(), event.getButtonState(),
+                Float.floatToRawIntBits(event.getPressure(pointerIndex)), event.getPointerId(pointerIndex), event.getDeviceId(),
+                Math.round(event.getX(pointerIndex)), Math.round(event.getY(pointerIndex)));
     }
 
     @SuppressLint("SetJavaScriptEnabled")
@@ -410,6 +419,9 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
             public void onPageFinished(WebView view, String url) {
                 if (null != url && url.contains("/stage/build/")) {
                     appStatusSyncEnabled = true;
+                    BootTimeline.publish(BootTimeline.PAGE_FINISHED);
+                    StartupTracer.end(StartupTracer.Span.PAGE_LOAD);
+                    StartupTracer.finish();
                 }
                 runOnUiThread(() -> {
                     bootLogo.setVisibility(View.GONE);
@@ -420,14 +432,10 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
 
             @Override
             public WebResourceResponse shouldInterceptRequest(final WebView view, final WebResourceRequest request) {
-                final Map<String, String> headers = request.getRequestHeaders();
-                final String lowerCaseURL = request.getUrl().toString().toLowerCase();
-                if (lowerCaseURL.contains("youtube")) {
-                    // YouTube 设置 Referer https://github.com/siyuan-note/siyuan/issues/16319
-                    headers.put("Referer", "https://b3log.org/siyuan/");
-                } else if (lowerCaseURL.contains("qpic")) {
-                    // 改进公众号图片加载 https://github.com/siyuan-note/siyuan/issues/16326
-                    return handleRequest(request.getUrl().toString(), headers);
+                // 界面静态资源直接从外观目录读取，外部资源按拦截规则处理
+                final WebResourceResponse response = InterceptRules.intercept(request);
+                if (null != response) {
+                    return response;
                 }
                 return super.shouldInterceptRequest(view, request);
             }
@@ -557,9 +565,6 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
         ws.setLoadWithOverviewMode(true);
         ws.setUserAgentString("SiYuan/" + Utils.version + " https://b3log.org/siyuan Android " + ws.getUserAgentString());
 
-        waitFotKernelHttpServing();
-        webView.loadUrl("http://127.0.0.1:6806/appearance/boot/index.html?v=" + Utils.version);
-
         keepLiveActive = true;
         keepLiveThread = new Thread(this::keepLive, "KeepLiveThread");
         keepLiveThread.start();
@@ -689,22 +694,10 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
         }
     }
 
-    private Handler bootHandler = new Handler(Looper.getMainLooper()) {
-        @Override
-        public void handleMessage(final Message msg) {
-            final String cmd = msg.getData().getString("cmd");
-            if ("startKernel".equals(cmd)) {
-                bootKernel();
-            } else {
-                showBootIndex();
-            }
-        }
-    };
+    private final Handler bootHandler = new Handler(Looper.getMainLooper());
 
     private void startHttpServer() {
-        if (null != server) {
-            server.stop();
-        }
+        stopHttpServer();
 
         try {
             // 解决乱码问题 https://github.com/koush/AndroidAsync/issues/656#issuecomment-523325452
@@ -716,54 +709,56 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
             Utils.logError("http", "init charset failed", e);
         }
 
+        // 使用独立的反应线程，不和 AsyncHttpClient 等共用默认实例；阻塞的处理提交到工作线程池
+        final AsyncServer reactor = new AsyncServer("HttpServer");
+        final HttpWorkers workers = new HttpWorkers(reactor);
+        final File snapshotDir = new File(getCacheDir(), "walkdir");
+        httpReactor = reactor;
+        httpWorkers = workers;
         server = new AsyncHttpServer();
-        server.post("/api/walkDir", (request, response) -> {
-            try {
-                final long start = System.currentTimeMillis();
-                final JSONObject requestJSON = (JSONObject) request.getBody().get();
-                final String dir = requestJSON.optString("dir");
-                final JSONObject data = new JSONObject();
-                final JSONArray files = new JSONArray();
-                FileUtils.listFilesAndDirs(new File(dir), TrueFileFilter.INSTANCE, DirectoryFileFilter.DIRECTORY).forEach(file -> {
-                    final String path = file.getAbsolutePath();
-                    final JSONObject info = new JSONObject();
-                    try {
-                        info.put("path", path);
-                        info.put("name", file.getName());
-                        info.put("size", file.length());
-                        info.put("updated", file.lastModified());
-                        info.put("isDir", file.isDirectory());
-                    } catch (final Exception e) {
-                        Utils.logError("http", "walk dir failed", e);
-                    }
-                    files.put(info);
-                });
-                data.put("files", files);
-                final JSONObject responseJSON = new JSONObject().put("code", 0).put("msg", "").put("data", data);
-                response.send(responseJSON);
-                Utils.logInfo("http", "Walk dir [" + dir + "] in [" + (System.currentTimeMillis() - start) + "] ms");
-            } catch (final Exception e) {
-                Utils.logError("http", "walk dir failed", e);
-                try {
-                    response.send(new JSONObject().put("code", -1).put("msg", e.getMessage()));
-                } catch (final Exception e2) {
-                    Utils.logError("http", "walk dir failed", e2);
-                }
+        final NativeRoutes routes = new NativeRoutes(server, workers);
+        httpRoutes = routes;
+        routes.stream("/api/walkDir", WALK_DIR_MAX_INFLIGHT, NativeRoutes.DEFAULT_MAX_BODY, (args, response) -> {
+            final Path dir = new File(args.optString("dir")).toPath();
+            final int parallelism = args.optInt("parallelism", DirWalker.MAX_PARALLELISM);
+            if (args.has("since")) {
+                // 增量遍历，只返回自 since 令牌以来变化的条目
+                DirSnapshot.stream(reactor, snapshotDir, dir, args.optString("since"), parallelism, response);
+                return;
             }
+            DirWalker.stream(reactor, dir, args.optString("cursor"), args.optInt("limit"), parallelism, response);
         });
+        routes.async("/api/watchDir", NativeRoutes.DEFAULT_MAX_BODY, (args, response) ->
+                DirWatcher.poll(reactor, new File(args.optString("dir")).toPath(), args.optString("cursor"),
+                        args.optLong("timeout"), response));
 
         serverPort = getAvailablePort();
-        final AsyncServer s = AsyncServer.getDefault();
-        if (Utils.isDebugPackageAndMode(this)) {
+        if (AppEnvironment.get().debug) {
             // 开发环境绑定所有网卡以便调试
-            s.listen(null, serverPort, server.getListenCallback());
+            reactor.listen(null, serverPort, server.getListenCallback());
         } else {
             // 生产环境绑定 ipv6 回环地址 [::1] 以防止被远程访问
-            s.listen(InetAddress.getLoopbackAddress(), serverPort, server.getListenCallback());
+            reactor.listen(InetAddress.getLoopbackAddress(), serverPort, server.getListenCallback());
         }
         Utils.logInfo("http", "HTTP server is listening on port [" + serverPort + "]");
     }
 
+    private void stopHttpServer() {
+        if (null != server) {
+            server.stop();
+            server = null;
+        }
+        httpRoutes = null;
+        if (null != httpWorkers) {
+            httpWorkers.shutdown();
+            httpWorkers = null;
+        }
+        if (null != httpReactor) {
+            httpReactor.stop();
+            httpReactor = null;
+        }
+    }
+
     private int getAvailablePort() {
         int ret = 6906;
         try {
@@ -780,60 +775,30 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
         Mobile.setHttpServerPort(MainActivity.serverPort);
         if (Mobile.isHttpServing()) {
             Log.i("kernel", "Kernel HTTP server is running");
-            bootIndex();
-            return;
-        }
-
-        try {
-            new Thread(() -> {
-                if (Utils.isHuaweiChannel(this.getPackageManager())) {
-                    Mobile.disableFeature("ai");
-                }
-
-                final String appDir = getFilesDir().getAbsolutePath() + "/app";
-                final String workspaceBaseDir = getExternalFilesDir(null).getAbsolutePath();
-                final String timezone = TimeZone.getDefault().getID();
-                final String localIPs = Utils.getLANIPAddressList(this);
-                final String langCode = Utils.getLanguage();
-                Mobile.startKernel("android", appDir, workspaceBaseDir, timezone, localIPs, langCode,
-                        Build.VERSION.RELEASE +
-                                "/SDK " + Build.VERSION.SDK_INT +
-                                "/WebView " + webViewVer +
-                                "/Manufacturer " + android.os.Build.MANUFACTURER +
-                                "/Brand " + android.os.Build.BRAND +
-                                "/UA " + userAgent);
-            }).start();
-        } catch (final Exception e) {
-            Utils.logError("kernel", "boot kernel failed", e);
             return;
         }
 
-        bootIndex();
-    }
-
-    private WebResourceResponse handleRequest(String urlString, Map<String, String> headers) {
-        try {
-            final URL url = new URL(urlString);
-            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-            for (Map.Entry<String, String> entry : headers.entrySet()) {
-                if ("referer".equalsIgnoreCase(entry.getKey())) {
-                    continue;
-                }
-                connection.setRequestProperty(entry.getKey(), entry.getValue());
+        new Thread(() -> {
+            final AppEnvironment env = AppEnvironment.get();
+            if (env.isHuaweiChannel()) {
+                Mobile.disableFeature("ai");
             }
-            connection.setRequestProperty("User-Agent", userAgent);
-
-            final String contentType = connection.getContentType();
-            final String mimeType = (contentType != null && contentType.contains(";")) ? contentType.split(";")[0] : contentType;
-            final String encoding = (contentType != null && contentType.contains("charset=")) ? contentType.split("charset=")[1] : "UTF-8";
-            final InputStream is = connection.getInputStream();
-            return new WebResourceResponse(mimeType, encoding, is);
 
-        } catch (final Exception e) {
-            Utils.logError("webview", "handle request failed for url [" + urlString + "]", e);
-            return null; // 返回空后 WebView 会尝试自己加载原始 URL
-        }
+            final String timezone = TimeZone.getDefault().getID();
+            final String localIPs = Utils.getLANIPAddressList(this);
+            KernelReadiness.starting();
+            BootTimeline.mark(BootTimeline.KERNEL_START);
+            StartupTracer.begin(StartupTracer.Span.KERNEL_BOOT);
+            try {
+                Mobile.startKernel("android", env.appDir.getAbsolutePath(), env.workspaceBaseDir.getAbsolutePath(),
+                        timezone, localIPs, env.language, env.deviceInfo());
+            } catch (final Throwable e) {
+                Utils.logError("kernel", "start kernel failed", e);
+                KernelReadiness.fail("start kernel failed: " + e.getMessage());
+            } finally {
+                StartupTracer.end(StartupTracer.Span.KERNEL_BOOT);
+            }
+        }, "KernelBoot").start();
     }
 
     private volatile boolean keepLiveActive = true;
@@ -869,68 +834,69 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
         }
     }
 
-    private void startKernel() {
-        final Bundle b = new Bundle();
-        b.putString("cmd", "startKernel");
-        final Message msg = new Message();
-        msg.setData(b);
-        bootHandler.sendMessage(msg);
-    }
-
-    private void bootIndex() {
-        final Bundle b = new Bundle();
-        b.putString("cmd", "bootIndex");
-        final Message msg = new Message();
-        msg.setData(b);
-        bootHandler.sendMessage(msg);
-    }
-
     /**
-     * 等待内核 HTTP 服务伺服。
+     * 等待内核 HTTP 服务伺服后加载启动页，内核启动失败或超时则展示错误.
      */
-    private void waitFotKernelHttpServing() {
-        while (true) {
-            sleep(10);
-            if (Mobile.isHttpServing()) {
-                break;
+    private void waitForKernelHttpServing() {
+        StartupTracer.begin(StartupTracer.Span.KERNEL_WAIT);
+        KernelReadiness.ready().whenComplete((result, e) -> runOnUiThread(() -> {
+            StartupTracer.end(StartupTracer.Span.KERNEL_WAIT);
+            if (null == webView) {
+                return;
             }
-        }
-    }
-
-    private void initAppearance() {
-        if (needUnzipAssets()) {
-            final String appDir = getFilesDir().getAbsolutePath() + "/app";
-            final File appVerFile = new File(appDir, "VERSION");
 
-            setBootProgress("Clearing appearance...", 20);
-            try {
-                FileUtils.deleteDirectory(new File(appDir));
-            } catch (final Exception e) {
-                Utils.logError("boot", "delete dir [" + appDir + "] failed, exit application", e);
-                exit();
+            if (null == e) {
+                StartupTracer.begin(StartupTracer.Span.PAGE_LOAD);
+                webView.loadUrl("http://127.0.0.1:6806/appearance/boot/index.html?v=" + Utils.version);
                 return;
             }
 
-            setBootProgress("Initializing appearance...", 60);
+            BootTimeline.publish(BootTimeline.FAILED);
+            final Throwable cause = null != e.getCause() ? e.getCause() : e;
+            Utils.logError("boot", "wait for kernel HTTP serving failed", cause);
+            bootProgressBar.setVisibility(View.GONE);
+            bootDetailsText.setVisibility(View.VISIBLE);
+            bootDetailsText.setText("Kernel failed to start: " + cause.getMessage());
+        }));
+    }
 
-            try {
-                final String appZip = getCacheDir() + "/app.zip";
-                IOUtils.copy(getAssets().open("app.zip"), FileUtils.openOutputStream(new File(appZip)));
-                Utils.unzipAsset(appZip, appDir + "/app");
-            } catch (final Exception e) {
-                Utils.logError("boot", "unzip assets failed, exit application", e);
-                exit();
-                return;
-            }
+    private void initAppearance() throws Exception {
+        StartupTracer.begin(StartupTracer.Span.APPEARANCE);
+        try {
+            extractAppearance();
+        } finally {
+            StartupTracer.end(StartupTracer.Span.APPEARANCE);
+        }
+    }
 
-            try {
-                FileUtils.writeStringToFile(appVerFile, Utils.versionCode + "", StandardCharsets.UTF_8);
-            } catch (final Exception e) {
-                Utils.logError("boot", "write version failed", e);
-            }
+    private void extractAppearance() throws Exception {
+        if (Mobile.isHttpServing()) {
+            // 主界面重建时内核仍在使用外观目录，不重新解压
+            BootTimeline.mark(BootTimeline.ASSET_CHECK);
+            Utils.logInfo("boot", "Kernel is serving, skip appearance check");
+            return;
+        }
 
-            setBootProgress("Booting kernel...", 80);
+        final boolean needUnzip = needUnzipAssets();
+        BootTimeline.mark(BootTimeline.ASSET_CHECK);
+        if (!needUnzip) {
+            return;
         }
+
+        final AppEnvironment env = AppEnvironment.get();
+        setBootProgress("Initializing appearance...", 20);
+
+        // 直接从 APK 读取 app.zip 并按清单增量、并发解压，不再复制到缓存目录
+        final AtomicInteger lastPercent = new AtomicInteger(-1);
+        new AppearanceExtractor(getAssets(), env.appDir).extract(env.debug, (path, done, total) -> {
+            final int percent = 0 < total ? 20 + 60 * done / total : 60;
+            if (lastPercent.getAndSet(percent) != percent) {
+                setBootProgress("Extracting appearance [" + done + (0 < total ? "/" + total : "") + "] " + path, percent);
+            }
+        });
+
+        BootTimeline.mark(BootTimeline.UNZIP);
+        setBootProgress("Booting kernel...", 80);
     }
 
     private void setBootProgress(final String text, final int progressPercent) {
@@ -1086,45 +1052,27 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
     }
 
     private boolean needUnzipAssets() {
-        final String appDir = getFilesDir().getAbsolutePath() + "/app";
-        final File appDirFile = new File(appDir);
+        final AppEnvironment env = AppEnvironment.get();
+        final File appDirFile = env.appDir;
         appDirFile.mkdirs();
 
-        if (Utils.isDebugPackageAndMode(this)) {
+        if (env.debug) {
             Log.i("boot", "Always unzip assets in debug mode");
             return true;
         }
 
-        final File appVerFile = new File(appDir, "VERSION");
-        if (!appVerFile.exists()) {
-            return true;
-        }
-
-        boolean ret = true;
         try {
-            String ver = FileUtils.readFileToString(appVerFile, StandardCharsets.UTF_8);
-            if (StringUtils.isEmpty(ver)) {
-                return true;
-            }
-            ver = ver.trim();
-            try {
-                return Integer.parseInt(ver) != Utils.versionCode;
-            } catch (final NumberFormatException e) {
-                return true;
-            }
+            return new AppearanceExtractor(getAssets(), appDirFile).needExtract();
         } catch (final Exception e) {
-            Utils.logError("boot", "check version failed", e);
+            Utils.logError("boot", "check appearance manifest failed", e);
         }
-        return ret;
+        return true;
     }
 
     @Override
     protected void onDestroy() {
-        Utils.logInfo("boot", "Destroy main activity, process [" + android.os.Process.myPid()
-                + "], instance [" + System.identityHashCode(this) + "], task [" + getTaskId()
-                + "], finishing [" + isFinishing() + "], task root [" + isTaskRoot()
-                + "], changing configurations [" + isChangingConfigurations() + "], changes [0x"
-                + Integer.toHexString(getChangingConfigurations()) + "]");
+        EventLog.log(EventLog.Event.MAIN_DESTROY, android.os.Process.myPid(), System.identityHashCode(this), getTaskId(),
+                isFinishing() ? 1 : 0, isTaskRoot() ? 1 : 0, isChangingConfigurations() ? 1 : 0, getChangingConfigurations());
         if (null != pendingAudioPermissionRequest) {
             pendingAudioPermissionRequest.deny();
             pendingAudioPermissionRequest = null;
@@ -1134,7 +1082,10 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
             microphonePermissionDialog = null;
         }
         super.onDestroy();
-        exit();
+
+        // 内核由 KernelService 持有，主界面销毁（例如被系统回收后重建）时不退出内核，重建后直接附着到运行中的内核
+        release();
+        KernelService.detach();
     }
 
     @Override
@@ -1178,9 +1129,17 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
                 + "], instance [" + System.identityHashCode(this) + "], task [" + getTaskId() + "]");
         release();
 
+        try {
+            final Intent kernelServiceIntent = new Intent(this, KernelService.class);
+            stopService(kernelServiceIntent);
+        } catch (final Exception e) {
+            Utils.logError("runtime", "stop kernel service failed", e);
+        }
+
         finishAffinity();
         finishAndRemoveTask();
 
+        MobileLog.flush();
         try {
             Mobile.exit();
         } catch (Exception e) {
@@ -1231,10 +1190,8 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
         }
 
         try {
-            if (null != server) {
-                server.stop();
-                server = null;
-            }
+            stopHttpServer();
+            DirWatcher.shutdown();
         } catch (final Exception e) {
             Utils.logError("runtime", "stop http server failed", e);
         }
@@ -1248,33 +1205,22 @@ public class MainActivity extends AppCompatActivity implements com.blankj.utilco
         } catch (final Exception e) {
             Utils.logError("runtime", "stop keep live thread failed", e);
         }
-
-        try {
-            final Intent kernelServiceIntent = new Intent(this, KernelService.class);
-            stopService(kernelServiceIntent);
-        } catch (final Exception e) {
-            Utils.logError("runtime", "stop kernel service failed", e);
-        }
     }
 
-    private void checkWebViewVer(final WebSettings ws) {
+    private void checkWebViewVer(final String webViewVer) {
         // Android check WebView version 95+ https://github.com/siyuan-note/siyuan/issues/15147
-        final String ua = ws.getUserAgentString();
-        if (ua.contains("Chrome/")) {
-            final int minVer = 95;
-            try {
-                final String chromeVersion = ua.split("Chrome/")[1].split(" ")[0];
-                if (chromeVersion.contains(".")) {
-                    final String[] chromeVersionParts = chromeVersion.split("\\.");
-                    webViewVer = chromeVersionParts[0];
-                    if (Integer.parseInt(webViewVer) < minVer) {
-                        Utils.showToast(this, "WebView version [" + webViewVer + "] is too low, please upgrade to [" + minVer + "] or higher");
-                    }
-                }
-            } catch (final Exception e) {
-                Utils.logError("boot", "check WebView version failed", e);
-                Utils.showToast(this, "Check WebView version failed: " + e.getMessage());
+        if (isFinishing() || StringUtils.isEmpty(webViewVer)) {
+            return;
+        }
+
+        final int minVer = 95;
+        try {
+            if (Integer.parseInt(webViewVer) < minVer) {
+                Utils.showToast(this, "WebView version [" + webViewVer + "] is too low, please upgrade to [" + minVer + "] or higher");
             }
+        } catch (final Exception e) {
+            Utils.logError("boot", "check WebView version failed", e);
+            Utils.showToast(this, "Check WebView version failed: " + e.getMessage());
         }
     }
 
@@ -0,0 +1,440 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.util.Log;
+
+import com.blankj.utilcode.util.StringUtils;
+import com.blankj.utilcode.util.TimeUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import mobile.Mobile;
+
+/**
+ * 工作空间 temp/mobile.log 异步写入.
+ * <p>
+ * 调用方只把日志行放入无锁队列后立即返回，不会阻塞在磁盘或内核调用上。单独的写入线程攒够一批或者等待超时后，
+ * 把队列中的日志合并成一次写入，文件通道保持打开，不再每行打开关闭一次文件。进程因未捕获异常退出和主动退出前同步写出剩余日志。
+ * </p>
+ * <p>
+ * 当前日志写满 {@value #SEGMENT_SIZE} 字节后轮转为 mobile.log.&lt;序号&gt;.gz 分段并压缩，最多保留 {@value #MAX_SEGMENTS} 个分段，
+ * 所有分段总大小不超过 {@value #DISK_BUDGET} 字节，超出时删除最旧的分段。可以按行数或时间范围流式读取最近的日志用于问题反馈。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.1.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class MobileLog {
+
+    private static final String LOG_NAME = "mobile.log";
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final long SEGMENT_SIZE = 2L * 1024 * 1024;
+    private static final int MAX_SEGMENTS = 8;
+    private static final long DISK_BUDGET = 16L * 1024 * 1024;
+    private static final boolean COMPRESS_SEGMENTS = true;
+    private static final int MAX_READ_LINES = 10000;
+    private static final String TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final int BATCH_SIZE = 64;
+    private static final int MAX_PENDING = 8192;
+    private static final int MAX_WRITE = 64 * 1024;
+    private static final long FLUSH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final ConcurrentLinkedQueue<Line> queue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final AtomicInteger dropped = new AtomicInteger();
+    private static final Thread writer;
+
+    // 以下只在持有类锁时访问
+    private static final SimpleDateFormat timeParser = new SimpleDateFormat(TIME_FORMAT, Locale.getDefault());
+    private static String logPath;
+    private static FileChannel channel;
+    private static long size;
+
+    static {
+        writer = new Thread(MobileLog::loop, "MobileLogWriter");
+        writer.setDaemon(true);
+        writer.start();
+
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            log('E', "crash", "Uncaught exception in thread [" + thread.getName() + "]", e);
+            flush();
+            if (null != previous) {
+                previous.uncaughtException(thread, e);
+            }
+        });
+    }
+
+    private MobileLog() {
+    }
+
+    /**
+     * 日志入队，队列积压过多时丢弃非错误日志并在下次写入时记录丢弃行数.
+     */
+    static void log(final char level, final String tag, final String msg, final Throwable e) {
+        if ('E' != level && MAX_PENDING <= pending.get()) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        queue.offer(new Line(level, System.currentTimeMillis(), tag, msg, e));
+        if (BATCH_SIZE == pending.incrementAndGet()) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * 在调用线程上同步写出队列中的日志，用于进程退出前.
+     */
+    static void flush() {
+        try {
+            drain();
+        } catch (final Throwable e) {
+            Log.e("logging", "Write mobile log failed", e);
+        }
+        EventLog.flush();
+    }
+
+    /**
+     * 唤醒写入线程尽快写出队列中的日志，不等待写入完成.
+     */
+    static void requestFlush() {
+        LockSupport.unpark(writer);
+    }
+
+    private static void loop() {
+        while (true) {
+            if (BATCH_SIZE > pending.get()) {
+                LockSupport.parkNanos(FLUSH_INTERVAL);
+            }
+            flush();
+        }
+    }
+
+    private static synchronized void drain() throws IOException {
+        Line line = queue.poll();
+        if (null == line && 0 == dropped.get()) {
+            return;
+        }
+
+        final String workspacePath = Mobile.getCurrentWorkspacePath();
+        if (StringUtils.isEmpty(workspacePath)) {
+            // 工作空间尚未确定时无处可写，和之前一样丢弃
+            for (; null != line; line = queue.poll()) {
+                pending.decrementAndGet();
+            }
+            return;
+        }
+
+        final StringBuilder buf = new StringBuilder(4096);
+        final int droppedLines = dropped.getAndSet(0);
+        if (0 < droppedLines) {
+            buf.append("W ").append(formatTime(System.currentTimeMillis())).append(" logging Dropped [")
+                    .append(droppedLines).append("] lines\n");
+        }
+        for (; null != line; line = queue.poll()) {
+            pending.decrementAndGet();
+            line.appendTo(buf);
+            if (MAX_WRITE <= buf.length()) {
+                write(workspacePath + "/temp/" + LOG_NAME, buf);
+                buf.setLength(0);
+            }
+        }
+        write(workspacePath + "/temp/" + LOG_NAME, buf);
+    }
+
+    /**
+     * 读取最近的日志行，从新到旧依次流式读取各分段，内存占用只和读取的行数有关.
+     *
+     * @param lines 行数，最多 {@value #MAX_READ_LINES} 行
+     * @return 按时间先后排列的日志行
+     */
+    static synchronized List<String> tail(final int lines) {
+        flush();
+        final int limit = Math.min(Math.max(0, lines), MAX_READ_LINES);
+        final Deque<String> ret = new ArrayDeque<>(limit);
+        final List<File> files = logFiles();
+        for (int i = files.size() - 1; 0 <= i && ret.size() < limit; i--) {
+            final Deque<String> fileTail = new ArrayDeque<>();
+            final int want = limit - ret.size();
+            try (final BufferedReader reader = openReader(files.get(i))) {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    if (fileTail.size() == want) {
+                        fileTail.removeFirst();
+                    }
+                    fileTail.addLast(line);
+                }
+            } catch (final IOException e) {
+                Log.e("logging", "Read mobile log [" + files.get(i) + "] failed", e);
+            }
+            while (!fileTail.isEmpty()) {
+                ret.addFirst(fileTail.removeLast());
+            }
+        }
+        return new ArrayList<>(ret);
+    }
+
+    /**
+     * 读取时间范围内的日志行，堆栈等续行跟随所属的日志行，最多返回 {@value #MAX_READ_LINES} 行.
+     *
+     * @param from 起始时间（毫秒，包含）
+     * @param to   结束时间（毫秒，包含）
+     * @return 按时间先后排列的日志行
+     */
+    static synchronized List<String> window(final long from, final long to) {
+        flush();
+        final List<String> ret = new ArrayList<>();
+        for (final File file : logFiles()) {
+            // 分段的修改时间就是其中最后一行的写入时间
+            if (file.lastModified() < from - 1000) {
+                continue;
+            }
+
+            boolean inWindow = false;
+            try (final BufferedReader reader = openReader(file)) {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    final long time = parseTime(line);
+                    if (0 < time) {
+                        if (time > to) {
+                            return ret;
+                        }
+                        inWindow = time >= from;
+                    }
+                    if (inWindow) {
+                        ret.add(line);
+                        if (MAX_READ_LINES <= ret.size()) {
+                            return ret;
+                        }
+                    }
+                }
+            } catch (final IOException e) {
+                Log.e("logging", "Read mobile log [" + file + "] failed", e);
+            }
+        }
+        return ret;
+    }
+
+    private static void write(final String path, final StringBuilder buf) throws IOException {
+        if (0 == buf.length()) {
+            return;
+        }
+
+        if (null != channel && (!path.equals(logPath) || !new File(path).exists())) {
+            closeChannel();
+        }
+        if (null == channel) {
+            channel = new FileOutputStream(path, true).getChannel();
+            logPath = path;
+            size = channel.size();
+        }
+
+        final ByteBuffer bytes = ByteBuffer.wrap(buf.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (bytes.hasRemaining()) {
+                size += channel.write(bytes);
+            }
+        } catch (final IOException e) {
+            closeChannel();
+            throw e;
+        }
+
+        if (SEGMENT_SIZE <= size) {
+            rotate(new File(path));
+        }
+    }
+
+    private static void rotate(final File active) {
+        closeChannel();
+        final File dir = active.getParentFile();
+        final List<File> segments = segments(dir);
+        final long seq = segments.isEmpty() ? 1 : segmentSeq(segments.get(segments.size() - 1).getName()) + 1;
+        final File closed = new File(dir, LOG_NAME + "." + seq);
+        if (!active.renameTo(closed)) {
+            Log.e("logging", "Rotate mobile log failed");
+            active.delete();
+            return;
+        }
+
+        if (COMPRESS_SEGMENTS) {
+            final File gz = new File(dir, closed.getName() + GZIP_SUFFIX);
+            try (final InputStream in = new FileInputStream(closed);
+                 final OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+                final byte[] buf = new byte[64 * 1024];
+                int n;
+                while (-1 != (n = in.read(buf))) {
+                    out.write(buf, 0, n);
+                }
+            } catch (final IOException e) {
+                Log.e("logging", "Compress mobile log segment failed", e);
+                gz.delete();
+            }
+            if (gz.exists()) {
+                gz.setLastModified(closed.lastModified());
+                closed.delete();
+            }
+        }
+
+        // 按数量和总大小删除最旧的分段，为当前日志预留一个分段的空间
+        final List<File> remaining = segments(dir);
+        long total = 0;
+        for (final File segment : remaining) {
+            total += segment.length();
+        }
+        for (int i = 0; i < remaining.size() && (remaining.size() - i > MAX_SEGMENTS || total + SEGMENT_SIZE > DISK_BUDGET); i++) {
+            total -= remaining.get(i).length();
+            remaining.get(i).delete();
+        }
+    }
+
+    /**
+     * 当前工作空间的日志文件，按时间先后排列，最后一个是正在写入的日志.
+     */
+    private static List<File> logFiles() {
+        final List<File> ret = new ArrayList<>();
+        final String workspacePath = Mobile.getCurrentWorkspacePath();
+        if (StringUtils.isEmpty(workspacePath)) {
+            return ret;
+        }
+
+        final File dir = new File(workspacePath, "temp");
+        ret.addAll(segments(dir));
+        final File active = new File(dir, LOG_NAME);
+        if (active.exists()) {
+            ret.add(active);
+        }
+        return ret;
+    }
+
+    private static List<File> segments(final File dir) {
+        final File[] files = dir.listFiles((d, name) -> 0 < segmentSeq(name));
+        if (null == files) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(segmentSeq(a.getName()), segmentSeq(b.getName())));
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    /**
+     * 解析分段文件名 mobile.log.&lt;序号&gt;[.gz] 中的序号，不是分段文件时返回 0.
+     */
+    private static long segmentSeq(final String name) {
+        if (!name.startsWith(LOG_NAME + ".")) {
+            return 0;
+        }
+
+        String seq = name.substring(LOG_NAME.length() + 1);
+        if (seq.endsWith(GZIP_SUFFIX)) {
+            seq = seq.substring(0, seq.length() - GZIP_SUFFIX.length());
+        }
+        try {
+            return Long.parseLong(seq);
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static BufferedReader openReader(final File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(GZIP_SUFFIX)) {
+            try {
+                in = new GZIPInputStream(in);
+            } catch (final IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析日志行 "L yyyy-MM-dd HH:mm:ss tag msg" 中的时间，续行返回 0.
+     */
+    private static long parseTime(final String line) {
+        if (21 > line.length() || ' ' != line.charAt(1)) {
+            return 0;
+        }
+
+        final Date date = timeParser.parse(line, new ParsePosition(2));
+        return null == date ? 0 : date.getTime();
+    }
+
+    private static void closeChannel() {
+        try {
+            channel.close();
+        } catch (final IOException ignored) {
+        }
+        channel = null;
+        logPath = null;
+    }
+
+    private static String formatTime(final long time) {
+        return TimeUtils.millis2String(time, TIME_FORMAT);
+    }
+
+    private static final class Line {
+        private final char level;
+        private final long time;
+        private final String tag;
+        private final String msg;
+        private final Throwable e;
+
+        private Line(final char level, final long time, final String tag, final String msg, final Throwable e) {
+            this.level = level;
+            this.time = time;
+            this.tag = tag;
+            this.msg = msg;
+            this.e = e;
+        }
+
+        private void appendTo(final StringBuilder buf) {
+            buf.append(level).append(' ').append(formatTime(time)).append(' ').append(tag).append(' ').append(msg).append('\n');
+            if (null != e) {
+                buf.append(Log.getStackTraceString(e)).append('\n');
+            }
+        }
+    }
+}
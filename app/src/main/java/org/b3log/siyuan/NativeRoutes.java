@@ -0,0 +1,253 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import com.blankj.utilcode.util.StringUtils;
+import com.koushikdutta.async.http.body.AsyncHttpRequestBody;
+import com.koushikdutta.async.http.server.AsyncHttpServer;
+import com.koushikdutta.async.http.server.AsyncHttpServerRequest;
+import com.koushikdutta.async.http.server.AsyncHttpServerResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地 HTTP 服务的接口注册表.
+ * <p>
+ * 原生接口通过 {@link #json}、{@link #stream} 和 {@link #async} 注册，统一解析请求体、检查请求大小、
+ * 按 {"code", "msg", "data"} 编码响应，并按接口统计请求数、错误数和耗时分布，通过 /api/native/metrics 查看。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class NativeRoutes {
+
+    static final int DEFAULT_MAX_BODY = 64 * 1024;
+    static final String METRICS_PATH = "/api/native/metrics";
+
+    /**
+     * 普通接口，在工作线程上执行，返回值作为响应的 data 字段.
+     */
+    interface JsonHandler {
+        Object handle(JSONObject args) throws Exception;
+    }
+
+    /**
+     * 自行写出响应的接口，例如分块输出和长轮询.
+     */
+    interface RawHandler {
+        void handle(JSONObject args, AsyncHttpServerResponse response) throws Exception;
+    }
+
+    private enum Mode {
+        // 在工作线程上执行，由注册表写出响应
+        JSON,
+        // 在工作线程上执行，由接口自行写出响应
+        STREAM,
+        // 在反应线程上执行，不能阻塞，由接口自行写出响应
+        ASYNC
+    }
+
+    private final AsyncHttpServer server;
+    private final HttpWorkers workers;
+    private final Map<String, Route> routes = new ConcurrentSkipListMap<>();
+
+    NativeRoutes(final AsyncHttpServer server, final HttpWorkers workers) {
+        this.server = server;
+        this.workers = workers;
+        add("GET", METRICS_PATH, Mode.ASYNC, 0, 0, (args, response) -> response.send(ok(metrics())), null);
+    }
+
+    /**
+     * 注册普通 POST 接口.
+     *
+     * @param maxInflight  同时处理（含排队）的请求上限，不限制时传 0
+     * @param maxBodyBytes 请求体大小上限
+     */
+    void json(final String path, final int maxInflight, final int maxBodyBytes, final JsonHandler handler) {
+        add("POST", path, Mode.JSON, maxInflight, maxBodyBytes, null, handler);
+    }
+
+    /**
+     * 注册在工作线程上自行写出响应的 POST 接口，返回时响应需要已经写完.
+     */
+    void stream(final String path, final int maxInflight, final int maxBodyBytes, final RawHandler handler) {
+        add("POST", path, Mode.STREAM, maxInflight, maxBodyBytes, handler, null);
+    }
+
+    /**
+     * 注册在反应线程上执行的 POST 接口，处理不能阻塞，可以稍后再写出响应.
+     */
+    void async(final String path, final int maxBodyBytes, final RawHandler handler) {
+        add("POST", path, Mode.ASYNC, 0, maxBodyBytes, handler, null);
+    }
+
+    JSONObject metrics() throws JSONException {
+        final JSONObject routesJSON = new JSONObject();
+        for (final Route route : routes.values()) {
+            routesJSON.put(route.method + " " + route.path, route.toJSON());
+        }
+        return new JSONObject()
+                .put("routes", routesJSON)
+                .put("workers", workers.metrics());
+    }
+
+    /**
+     * 编码成功响应.
+     */
+    static JSONObject ok(final Object data) {
+        try {
+            return new JSONObject().put("code", 0).put("msg", "").put("data", null == data ? JSONObject.NULL : data);
+        } catch (final JSONException e) {
+            return HttpWorkers.error(e.getMessage());
+        }
+    }
+
+    private void add(final String method, final String path, final Mode mode, final int maxInflight, final int maxBodyBytes,
+                     final RawHandler raw, final JsonHandler json) {
+        final Route route = new Route(method, path, mode, maxInflight, maxBodyBytes);
+        if (null != routes.put(method + " " + path, route)) {
+            throw new IllegalStateException("route [" + method + " " + path + "] already registered");
+        }
+        server.addAction(method, path, (request, response) -> dispatch(route, request, response, raw, json));
+    }
+
+    private void dispatch(final Route route, final AsyncHttpServerRequest request, final AsyncHttpServerResponse response,
+                          final RawHandler raw, final JsonHandler json) {
+        route.requests.increment();
+        final long start = System.currentTimeMillis();
+        final JSONObject args;
+        try {
+            args = decode(request, route.maxBodyBytes);
+        } catch (final TooLargeException e) {
+            route.tooLarge.increment();
+            response.code(413);
+            response.send(HttpWorkers.error(e.getMessage()));
+            return;
+        } catch (final Exception e) {
+            route.errors.increment();
+            response.code(400);
+            response.send(HttpWorkers.error("invalid request body: " + e.getMessage()));
+            return;
+        }
+
+        if (Mode.ASYNC == route.mode) {
+            try {
+                raw.handle(args, response);
+            } catch (final Exception e) {
+                route.errors.increment();
+                Utils.logError("http", "handle [" + route.path + "] failed", e);
+                response.send(HttpWorkers.error(e.getMessage()));
+            } finally {
+                route.latency.record(System.currentTimeMillis() - start);
+            }
+            return;
+        }
+
+        final boolean accepted = workers.submit(route.path, route.maxInflight, response, () -> {
+            try {
+                if (Mode.JSON == route.mode) {
+                    workers.send(response, ok(json.handle(args)));
+                } else {
+                    raw.handle(args, response);
+                }
+            } catch (final Exception e) {
+                route.errors.increment();
+                throw e;
+            } finally {
+                route.latency.record(System.currentTimeMillis() - start);
+            }
+        });
+        if (!accepted) {
+            route.rejected.increment();
+        }
+    }
+
+    /**
+     * 解析请求体，没有请求体时返回空对象.
+     */
+    private static JSONObject decode(final AsyncHttpServerRequest request, final int maxBodyBytes) throws Exception {
+        final String contentLength = request.getHeaders().get("Content-Length");
+        if (0 < maxBodyBytes && !StringUtils.isTrimEmpty(contentLength)) {
+            final long length = Long.parseLong(contentLength.trim());
+            if (length > maxBodyBytes) {
+                throw new TooLargeException(length, maxBodyBytes);
+            }
+        }
+
+        final AsyncHttpRequestBody<?> body = request.getBody();
+        final Object value = null == body ? null : body.get();
+        if (value instanceof JSONObject) {
+            return (JSONObject) value;
+        }
+        if (value instanceof String) {
+            // WebView 发起的请求可能没有带 Content-Type: application/json
+            final String text = (String) value;
+            if (0 < maxBodyBytes && text.length() > maxBodyBytes) {
+                throw new TooLargeException(text.length(), maxBodyBytes);
+            }
+            return StringUtils.isTrimEmpty(text) ? new JSONObject() : new JSONObject(text);
+        }
+        return new JSONObject();
+    }
+
+    private static final class TooLargeException extends Exception {
+        private TooLargeException(final long length, final int max) {
+            super("request body too large [" + length + " > " + max + "]");
+        }
+    }
+
+    private static final class Route {
+        private final String method;
+        private final String path;
+        private final Mode mode;
+        private final int maxInflight;
+        private final int maxBodyBytes;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder tooLarge = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Route(final String method, final String path, final Mode mode, final int maxInflight, final int maxBodyBytes) {
+            this.method = method;
+            this.path = path;
+            this.mode = mode;
+            this.maxInflight = maxInflight;
+            this.maxBodyBytes = maxBodyBytes;
+        }
+
+        private JSONObject toJSON() throws JSONException {
+            return new JSONObject()
+                    .put("mode", mode.name().toLowerCase())
+                    .put("maxInflight", maxInflight)
+                    .put("maxBodyBytes", maxBodyBytes)
+                    .put("requests", requests.sum())
+                    .put("errors", errors.sum())
+                    .put("rejected", rejected.sum())
+                    .put("tooLarge", tooLarge.sum())
+                    .put("latency", latency.toJSON());
+        }
+    }
+}
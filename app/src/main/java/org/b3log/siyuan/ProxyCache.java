@@ -0,0 +1,532 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.webkit.WebResourceResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代理资源磁盘缓存.
+ * <p>
+ * 由 {@link ProxyClient} 代为加载的外部资源在 WebView 读取的同时写入缓存（边读边存），按内容的 SHA-256 存放，
+ * 不同 URL 指向相同内容时只存一份。索引记录 URL 到内容的映射和 ETag/Last-Modified 等校验信息，
+ * 保存在 index.json 中，重启后继续有效。总大小超过上限时按最近最少使用淘汰。
+ * 缓存过期后带校验头重新请求，304 时直接使用缓存；网络不可用时使用过期的缓存，离线也能查看。
+ * </p>
+ * <p>
+ * 索引是延迟保存的，进程在保存前退出时会留下索引中没有的内容文件，加载索引后删除这些文件，避免占用不计入上限的空间。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class ProxyCache {
+
+    private static final long MAX_BYTES = 128L * 1024 * 1024;
+    private static final long MAX_ENTRY_BYTES = 16L * 1024 * 1024;
+    // 没有 max-age 也没有校验信息时的有效期
+    private static final long DEFAULT_TTL = 60 * 60 * 1000;
+    private static final long SAVE_DELAY = 2 * 1000;
+    private static final String INDEX = "index.json";
+
+    /**
+     * 缓存条目，字段创建后不再修改，更新时整体替换.
+     */
+    static final class Entry {
+        final String url;
+        final String hash;
+        final long size;
+        final String mimeType;
+        final String encoding;
+        final String etag;
+        final String lastModified;
+        final long expires;
+
+        private Entry(final String url, final String hash, final long size, final String mimeType, final String encoding,
+                      final String etag, final String lastModified, final long expires) {
+            this.url = url;
+            this.hash = hash;
+            this.size = size;
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < expires;
+        }
+
+        private Entry withExpires(final long expires) {
+            return new Entry(url, hash, size, mimeType, encoding, etag, lastModified, expires);
+        }
+    }
+
+    private static File dir;
+    private static boolean loaded;
+    private static boolean saveScheduled;
+    private static long totalBytes;
+    // 按访问顺序排列，最久未访问的在前
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // 内容哈希 -> 引用该内容的条目数
+    private static final Map<String, Integer> refs = new HashMap<>();
+    private static final ScheduledExecutorService saver =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "ProxyCache"));
+
+    private ProxyCache() {
+    }
+
+    /**
+     * 加载索引，在启动阶段的后台线程上调用；加载完成前查询都视为未命中.
+     */
+    static void open(final File cacheDir) {
+        final File blobs = new File(cacheDir, "blobs");
+        final File tmp = new File(cacheDir, "tmp");
+        try {
+            FileUtils.deleteDirectory(tmp);
+        } catch (final IOException e) {
+            Utils.logError("proxyCache", "clean proxy cache temp dir failed", e);
+        }
+        blobs.mkdirs();
+        tmp.mkdirs();
+
+        final LinkedHashMap<String, Entry> loadedEntries = new LinkedHashMap<>();
+        final File index = new File(cacheDir, INDEX);
+        if (index.exists()) {
+            try {
+                final JSONArray array = new JSONArray(FileUtils.readFileToString(index, StandardCharsets.UTF_8));
+                for (int i = 0; i < array.length(); i++) {
+                    final JSONObject e = array.getJSONObject(i);
+                    final Entry entry = new Entry(e.getString("url"), e.getString("hash"), e.getLong("size"),
+                            e.optString("mimeType", null), e.optString("encoding", null), e.optString("etag", null),
+                            e.optString("lastModified", null), e.optLong("expires"));
+                    if (blob(blobs, entry.hash).length() == entry.size) {
+                        loadedEntries.put(entry.url, entry);
+                    }
+                }
+            } catch (final Exception e) {
+                Utils.logError("proxyCache", "load proxy cache index failed, start with an empty cache", e);
+                loadedEntries.clear();
+            }
+        }
+
+        synchronized (ProxyCache.class) {
+            dir = cacheDir;
+            entries.clear();
+            refs.clear();
+            totalBytes = 0;
+            for (final Entry entry : loadedEntries.values()) {
+                entries.put(entry.url, entry);
+                ref(entry);
+            }
+            deleteOrphans(blobs);
+            loaded = true;
+            if (evict()) {
+                scheduleSave();
+            }
+        }
+        Utils.logInfo("proxyCache", "Loaded [" + loadedEntries.size() + "] proxy cache entries, [" + totalBytes + "] bytes");
+    }
+
+    static synchronized Entry lookup(final String url) {
+        return loaded ? entries.get(url) : null;
+    }
+
+    /**
+     * 使用缓存内容构造响应，内容文件已经不存在时移除条目并返回 {@code null}.
+     */
+    static WebResourceResponse serve(final Entry entry) {
+        final File file;
+        synchronized (ProxyCache.class) {
+            if (!loaded) {
+                return null;
+            }
+            file = blob(new File(dir, "blobs"), entry.hash);
+        }
+
+        final InputStream data;
+        try {
+            data = new FileInputStream(file);
+        } catch (final IOException e) {
+            remove(entry.url);
+            return null;
+        }
+
+        final Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Length", String.valueOf(entry.size));
+        if (null != entry.etag) {
+            headers.put("ETag", entry.etag);
+        }
+        if (null != entry.lastModified) {
+            headers.put("Last-Modified", entry.lastModified);
+        }
+        return new WebResourceResponse(entry.mimeType, entry.encoding, 200, "OK", headers, data);
+    }
+
+    /**
+     * 重新校验返回 304 后延长有效期.
+     */
+    static synchronized void revalidated(final Entry entry, final long expires) {
+        if (entries.get(entry.url) == entry) {
+            entries.put(entry.url, entry.withExpires(expires));
+            scheduleSave();
+        }
+    }
+
+    /**
+     * 按响应头计算过期时间，不能缓存时返回 -1.
+     */
+    static long expires(final String cacheControl, final String etag, final String lastModified) {
+        final long now = System.currentTimeMillis();
+        if (null == cacheControl) {
+            return null == etag && null == lastModified ? now + DEFAULT_TTL : now;
+        }
+
+        final String value = cacheControl.toLowerCase(Locale.ROOT);
+        if (value.contains("no-store")) {
+            return -1;
+        }
+        if (value.contains("no-cache")) {
+            return now;
+        }
+        final int i = value.indexOf("max-age=");
+        if (0 <= i) {
+            int end = i + "max-age=".length();
+            while (end < value.length() && Character.isDigit(value.charAt(end))) {
+                end++;
+            }
+            try {
+                return now + Long.parseLong(value.substring(i + "max-age=".length(), end)) * 1000;
+            } catch (final NumberFormatException ignored) {
+                // 按没有 max-age 处理
+            }
+        }
+        return null == etag && null == lastModified ? now + DEFAULT_TTL : now;
+    }
+
+    /**
+     * 包装响应流，WebView 读到末尾时将内容写入缓存；中途关闭或者出错时丢弃.
+     *
+     * @param contentLength 响应头中的长度，未知时为 -1
+     */
+    static InputStream tee(final InputStream in, final String url, final long contentLength, final String mimeType,
+                           final String encoding, final String etag, final String lastModified, final long expires) {
+        final File tmpDir;
+        synchronized (ProxyCache.class) {
+            if (!loaded || 0 > expires || MAX_ENTRY_BYTES < contentLength) {
+                return in;
+            }
+            tmpDir = new File(dir, "tmp");
+        }
+
+        try {
+            final File tmp = new File(tmpDir, UUID.randomUUID().toString());
+            return new TeeInputStream(in, tmp, url, mimeType, encoding, etag, lastModified, expires);
+        } catch (final Exception e) {
+            Utils.logError("proxyCache", "create proxy cache temp file failed", e);
+            return in;
+        }
+    }
+
+    private static synchronized void put(final Entry entry, final File tmp) {
+        if (!loaded) {
+            tmp.delete();
+            return;
+        }
+
+        final File blob = blob(new File(dir, "blobs"), entry.hash);
+        if (refs.containsKey(entry.hash)) {
+            // 内容已经存在
+            tmp.delete();
+        } else {
+            blob.getParentFile().mkdirs();
+            if (!tmp.renameTo(blob)) {
+                tmp.delete();
+                return;
+            }
+        }
+
+        // 先引用新内容再释放旧内容，同一地址内容未变时不会删除共用的文件
+        ref(entry);
+        final Entry old = entries.put(entry.url, entry);
+        if (null != old) {
+            unref(old);
+        }
+        evict();
+        scheduleSave();
+    }
+
+    private static synchronized void remove(final String url) {
+        final Entry old = entries.remove(url);
+        if (null != old) {
+            unref(old);
+            scheduleSave();
+        }
+    }
+
+    private static boolean evict() {
+        boolean evicted = false;
+        for (final Iterator<Entry> it = entries.values().iterator(); MAX_BYTES < totalBytes && it.hasNext(); ) {
+            final Entry entry = it.next();
+            it.remove();
+            unref(entry);
+            evicted = true;
+        }
+        return evicted;
+    }
+
+    private static void ref(final Entry entry) {
+        final Integer count = refs.get(entry.hash);
+        if (null == count) {
+            refs.put(entry.hash, 1);
+            totalBytes += entry.size;
+        } else {
+            refs.put(entry.hash, count + 1);
+        }
+    }
+
+    private static void unref(final Entry entry) {
+        final Integer count = refs.get(entry.hash);
+        if (null == count) {
+            return;
+        }
+        if (1 < count) {
+            refs.put(entry.hash, count - 1);
+            return;
+        }
+        refs.remove(entry.hash);
+        totalBytes -= entry.size;
+        blob(new File(dir, "blobs"), entry.hash).delete();
+    }
+
+    private static void scheduleSave() {
+        if (saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        saver.schedule(ProxyCache::save, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private static void save() {
+        final JSONArray array = new JSONArray();
+        final File index;
+        try {
+            synchronized (ProxyCache.class) {
+                saveScheduled = false;
+                index = new File(dir, INDEX);
+                for (final Entry entry : entries.values()) {
+                    array.put(new JSONObject()
+                            .put("url", entry.url)
+                            .put("hash", entry.hash)
+                            .put("size", entry.size)
+                            .putOpt("mimeType", entry.mimeType)
+                            .putOpt("encoding", entry.encoding)
+                            .putOpt("etag", entry.etag)
+                            .putOpt("lastModified", entry.lastModified)
+                            .put("expires", entry.expires));
+                }
+            }
+
+            // 先写临时文件再改名，写到一半被杀掉也不会破坏索引
+            final File tmp = new File(index.getPath() + ".tmp");
+            FileUtils.writeStringToFile(tmp, array.toString(), StandardCharsets.UTF_8);
+            if (!tmp.renameTo(index)) {
+                throw new IOException("rename [" + tmp + "] to [" + index + "] failed");
+            }
+        } catch (final Exception e) {
+            Utils.logError("proxyCache", "save proxy cache index failed", e);
+        }
+    }
+
+    /**
+     * 删除没有被任何条目引用的内容文件，在加载索引后持锁调用.
+     */
+    private static void deleteOrphans(final File blobs) {
+        final File[] shards = blobs.listFiles();
+        if (null == shards) {
+            return;
+        }
+
+        int count = 0;
+        long bytes = 0;
+        for (final File shard : shards) {
+            final File[] files = shard.listFiles();
+            if (null == files) {
+                // 不是分片目录
+                FileUtils.deleteQuietly(shard);
+                continue;
+            }
+            for (final File file : files) {
+                if (refs.containsKey(file.getName())) {
+                    continue;
+                }
+                final long length = file.length();
+                if (FileUtils.deleteQuietly(file)) {
+                    count++;
+                    bytes += length;
+                }
+            }
+            final String[] left = shard.list();
+            if (null != left && 0 == left.length) {
+                shard.delete();
+            }
+        }
+        if (0 < count) {
+            Utils.logInfo("proxyCache", "Deleted [" + count + "] orphan proxy cache blobs, [" + bytes + "] bytes");
+        }
+    }
+
+    private static File blob(final File blobs, final String hash) {
+        return new File(new File(blobs, hash.substring(0, 2)), hash);
+    }
+
+    private static final class TeeInputStream extends FilterInputStream {
+        private final File tmp;
+        private final OutputStream out;
+        private final MessageDigest digest;
+        private final String url;
+        private final String mimeType;
+        private final String encoding;
+        private final String etag;
+        private final String lastModified;
+        private final long expires;
+        private long size;
+        private boolean eof;
+        private boolean failed;
+        private boolean closed;
+
+        private TeeInputStream(final InputStream in, final File tmp, final String url, final String mimeType, final String encoding,
+                               final String etag, final String lastModified, final long expires) throws Exception {
+            super(in);
+            this.tmp = tmp;
+            this.out = new FileOutputStream(tmp);
+            this.digest = MessageDigest.getInstance("SHA-256");
+            this.url = url;
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            final int n = read(b, 0, 1);
+            return -1 == n ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (-1 == n) {
+                eof = true;
+                return n;
+            }
+            if (!failed) {
+                size += n;
+                if (MAX_ENTRY_BYTES < size) {
+                    failed = true;
+                } else {
+                    try {
+                        out.write(b, off, n);
+                        digest.update(b, off, n);
+                    } catch (final IOException e) {
+                        // 写缓存失败不影响 WebView 读取
+                        failed = true;
+                    }
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            // 跳过的内容也需要写入缓存
+            final byte[] buf = new byte[(int) Math.min(8192, Math.max(0, n))];
+            long skipped = 0;
+            while (skipped < n) {
+                final int read = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+                if (-1 == read) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                try {
+                    out.close();
+                } catch (final IOException ignored) {
+                    failed = true;
+                }
+                if (eof && !failed) {
+                    put(new Entry(url, hex(digest.digest()), size, mimeType, encoding, etag, lastModified, expires), tmp);
+                } else {
+                    tmp.delete();
+                }
+            }
+        }
+
+        private static String hex(final byte[] bytes) {
+            final StringBuilder buf = new StringBuilder(bytes.length * 2);
+            for (final byte b : bytes) {
+                buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return buf.toString();
+        }
+    }
+}
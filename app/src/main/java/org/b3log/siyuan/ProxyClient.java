@@ -0,0 +1,238 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebView 拦截请求的代理客户端.
+ * <p>
+ * 由 shouldInterceptRequest 代为加载的外部资源（例如公众号图片）统一走这里：设置连接和读取超时，
+ * 同一主机同时进行的请求有上限，响应状态码和响应头原样传给 WebView。
+ * 返回的流读完并关闭后连接回到系统 HttpURLConnection 的连接池复用，不需要每张图片重新握手。
+ * 成功的响应写入 {@link ProxyCache}，命中且未过期时不访问网络，过期后带校验头重新请求，网络不可用时使用过期的缓存。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.1.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class ProxyClient {
+
+    private static final int CONNECT_TIMEOUT = 10 * 1000;
+    private static final int READ_TIMEOUT = 30 * 1000;
+    private static final int MAX_PER_HOST = 6;
+    private static final long ACQUIRE_TIMEOUT = 15 * 1000;
+
+    // 逐跳头和由连接自行处理的头不转发
+    private static final Set<String> SKIP_REQUEST_HEADERS = new HashSet<>(Arrays.asList(
+            "host", "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade", "te",
+            "accept-encoding", "referer", "user-agent"));
+    private static final Set<String> SKIP_RESPONSE_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade", "content-encoding",
+            "content-length", "content-type"));
+
+    private static final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    private ProxyClient() {
+    }
+
+    /**
+     * 代为加载请求，失败时返回 {@code null}，WebView 会自己加载原始 URL.
+     */
+    static WebResourceResponse fetch(final String urlString, final Map<String, String> headers) {
+        final URL url;
+        try {
+            url = new URL(urlString);
+        } catch (final IOException e) {
+            Utils.logError("webview", "invalid proxy url [" + urlString + "]", e);
+            return null;
+        }
+
+        final ProxyCache.Entry cached = ProxyCache.lookup(urlString);
+        if (null != cached && cached.isFresh()) {
+            final WebResourceResponse hit = ProxyCache.serve(cached);
+            if (null != hit) {
+                return hit;
+            }
+        }
+
+        final Semaphore permits = hosts.computeIfAbsent(url.getHost().toLowerCase(Locale.ROOT), k -> new Semaphore(MAX_PER_HOST));
+        try {
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                Utils.logInfo("webview", "Too many pending proxy requests to host [" + url.getHost() + "]");
+                return null == cached ? null : ProxyCache.serve(cached);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            connection.setInstanceFollowRedirects(true);
+            for (final Map.Entry<String, String> entry : headers.entrySet()) {
+                if (!SKIP_REQUEST_HEADERS.contains(entry.getKey().toLowerCase(Locale.ROOT))) {
+                    connection.setRequestProperty(entry.getKey(), entry.getValue());
+                }
+            }
+            connection.setRequestProperty("User-Agent", AppEnvironment.webView().join().userAgent);
+            if (null != cached) {
+                if (null != cached.etag) {
+                    connection.setRequestProperty("If-None-Match", cached.etag);
+                }
+                if (null != cached.lastModified) {
+                    connection.setRequestProperty("If-Modified-Since", cached.lastModified);
+                }
+            }
+
+            // 先取状态码发出请求，之后读取响应头不会再有网络往返
+            final int code = connection.getResponseCode();
+            if (304 == code && null != cached) {
+                ProxyCache.revalidated(cached, ProxyCache.expires(connection.getHeaderField("Cache-Control"), cached.etag,
+                        cached.lastModified));
+                // 读完空响应体以便连接回到连接池
+                connection.getInputStream().close();
+                permits.release();
+                connection = null;
+                return ProxyCache.serve(cached);
+            }
+            if (300 <= code && 400 > code) {
+                // 跨协议的重定向不会自动跟随，WebResourceResponse 也不接受 3xx，交给 WebView 自己处理
+                return null;
+            }
+            final InputStream body = 400 <= code ? connection.getErrorStream() : connection.getInputStream();
+            final String contentType = connection.getContentType();
+            final String mimeType = null == contentType ? null : contentType.split(";")[0].trim();
+            final String encoding = null != contentType && contentType.contains("charset=")
+                    ? contentType.substring(contentType.indexOf("charset=") + "charset=".length()).trim() : "UTF-8";
+            final String reason = connection.getResponseMessage();
+
+            final Map<String, String> responseHeaders = new HashMap<>();
+            for (final Map.Entry<String, List<String>> entry : connection.getHeaderFields().entrySet()) {
+                final String name = entry.getKey();
+                if (null == name || entry.getValue().isEmpty() || SKIP_RESPONSE_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    continue;
+                }
+                responseHeaders.put(name, entry.getValue().get(entry.getValue().size() - 1));
+            }
+
+            InputStream data = null == body ? new ByteArrayInputStream(new byte[0]) : body;
+            if (200 == code) {
+                final String etag = connection.getHeaderField("ETag");
+                final String lastModified = connection.getHeaderField("Last-Modified");
+                final String contentEncoding = connection.getHeaderField("Content-Encoding");
+                // 透明解压时响应头中的长度是压缩后的长度
+                final long contentLength = null == contentEncoding ? connection.getContentLengthLong() : -1;
+                data = ProxyCache.tee(data, urlString, contentLength, mimeType, encoding, etag, lastModified,
+                        ProxyCache.expires(connection.getHeaderField("Cache-Control"), etag, lastModified));
+            }
+            data = new ReleasingInputStream(data, connection, permits);
+            connection = null;
+            return new WebResourceResponse(mimeType, encoding, code, null == reason || reason.isEmpty() ? "OK" : reason,
+                    responseHeaders, data);
+        } catch (final Exception e) {
+            if (null != cached) {
+                // 离线时使用过期的缓存
+                Utils.logInfo("webview", "Serve stale proxy cache for url [" + urlString + "]: " + e.getMessage());
+                return ProxyCache.serve(cached);
+            }
+            Utils.logError("webview", "handle request failed for url [" + urlString + "]", e);
+            return null;
+        } finally {
+            if (null != connection) {
+                connection.disconnect();
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * WebView 读完关闭时归还主机并发额度；读取出错时断开连接，不把坏连接放回连接池.
+     */
+    private static final class ReleasingInputStream extends FilterInputStream {
+        private final HttpURLConnection connection;
+        private final Semaphore permits;
+        private boolean closed;
+        private boolean failed;
+
+        private ReleasingInputStream(final InputStream in, final HttpURLConnection connection, final Semaphore permits) {
+            super(in);
+            this.connection = connection;
+            this.permits = permits;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (final IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (final IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            try {
+                super.close();
+            } finally {
+                if (failed) {
+                    connection.disconnect();
+                }
+                permits.release();
+            }
+        }
+    }
+}
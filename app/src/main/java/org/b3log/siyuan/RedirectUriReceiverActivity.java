@@ -27,7 +27,7 @@ import androidx.appcompat.app.AppCompatActivity;
  * 思源 URI 分派入口。
  *
  * @author <a href="https://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, Jan 30, 2026
+ * @version 1.1.0.0, Oct 17, 2026
  * @since 3.5.9
  */
 public class RedirectUriReceiverActivity extends AppCompatActivity {
@@ -61,6 +61,9 @@ public class RedirectUriReceiverActivity extends AppCompatActivity {
             target = new Intent(this, MainActivity.class);
             target.putExtra("oidcCallback", data.toString());
             target.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        } else if (!LaunchGate.needAgreement(this)) {
+            // 协议已确认时块链接直接交给主界面，不经过引导界面
+            target = LaunchGate.mainIntent(this, LaunchGate.getBlockURL(intent));
         } else {
             target = new Intent(this, BootActivity.class);
             target.setData(data);
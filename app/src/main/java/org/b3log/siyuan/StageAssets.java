@@ -0,0 +1,224 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地伺服界面静态资源.
+ * <p>
+ * 界面的 JS、CSS、字体和图片就在外观目录 files/app/app/stage 下，由 WebView 拦截请求直接从磁盘返回，
+ * 不再经过回环地址请求内核 HTTP 服务，启动和切换页签时静态资源不会排在 API 请求后面。
+ * HTML 需要内核渲染模板，仍然交给内核处理。启动时将常用资源预先做内存映射，后续请求直接从页缓存读取。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class StageAssets {
+
+    private static final String KERNEL_HOST = "127.0.0.1";
+    private static final int KERNEL_PORT = 6806;
+    private static final String STAGE_PREFIX = "/stage/";
+    private static final long PRELOAD_BUDGET = 32L * 1024 * 1024;
+    private static final long PRELOAD_MAX_FILE = 8L * 1024 * 1024;
+
+    private static final Map<String, String> MIME_TYPES;
+
+    static {
+        final Map<String, String> mimeTypes = new HashMap<>();
+        mimeTypes.put("js", "application/javascript");
+        mimeTypes.put("mjs", "application/javascript");
+        mimeTypes.put("css", "text/css");
+        mimeTypes.put("map", "application/json");
+        mimeTypes.put("wasm", "application/wasm");
+        mimeTypes.put("woff", "font/woff");
+        mimeTypes.put("woff2", "font/woff2");
+        mimeTypes.put("ttf", "font/ttf");
+        mimeTypes.put("otf", "font/otf");
+        mimeTypes.put("png", "image/png");
+        mimeTypes.put("jpg", "image/jpeg");
+        mimeTypes.put("jpeg", "image/jpeg");
+        mimeTypes.put("gif", "image/gif");
+        mimeTypes.put("webp", "image/webp");
+        mimeTypes.put("svg", "image/svg+xml");
+        mimeTypes.put("ico", "image/x-icon");
+        MIME_TYPES = Collections.unmodifiableMap(mimeTypes);
+    }
+
+    private static volatile File stageDir;
+    private static final Map<String, ByteBuffer> preloaded = new ConcurrentHashMap<>();
+
+    private StageAssets() {
+    }
+
+    /**
+     * 外观解压完成后调用，设置资源目录并预先映射常用资源.
+     *
+     * @param appDir 外观根目录 files/app
+     */
+    static void preload(final File appDir) {
+        final File dir = new File(appDir, "app/stage");
+        preloaded.clear();
+        if (!dir.isDirectory()) {
+            stageDir = null;
+            Utils.logInfo("boot", "Stage dir [" + dir + "] does not exist, serve stage assets by kernel");
+            return;
+        }
+        stageDir = dir;
+
+        long mapped = 0;
+        int count = 0;
+        final Deque<File> dirs = new ArrayDeque<>();
+        dirs.push(new File(dir, "build"));
+        while (!dirs.isEmpty() && mapped < PRELOAD_BUDGET) {
+            final File[] files = dirs.pop().listFiles();
+            if (null == files) {
+                continue;
+            }
+
+            for (final File file : files) {
+                if (file.isDirectory()) {
+                    dirs.push(file);
+                    continue;
+                }
+
+                final long length = file.length();
+                if (null == mimeType(file.getName()) || PRELOAD_MAX_FILE < length || PRELOAD_BUDGET < mapped + length) {
+                    continue;
+                }
+
+                try (final FileInputStream input = new FileInputStream(file); final FileChannel channel = input.getChannel()) {
+                    // 映射在通道关闭后仍然有效
+                    preloaded.put(relativePath(dir, file), channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+                    mapped += length;
+                    count++;
+                } catch (final IOException e) {
+                    Utils.logError("boot", "map stage asset [" + file + "] failed", e);
+                }
+            }
+        }
+        Utils.logInfo("boot", "Preloaded [" + count + "] stage assets, [" + mapped + "] bytes");
+    }
+
+    /**
+     * 拦截对内核 /stage/ 静态资源的请求，无法本地伺服时返回 {@code null} 交给内核处理.
+     */
+    static WebResourceResponse intercept(final WebResourceRequest request) {
+        final File dir = stageDir;
+        if (null == dir || !"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+
+        final Uri uri = request.getUrl();
+        final String path = uri.getPath();
+        if (KERNEL_PORT != uri.getPort() || !KERNEL_HOST.equals(uri.getHost()) || null == path
+                || !path.startsWith(STAGE_PREFIX) || path.contains("..")) {
+            return null;
+        }
+
+        final String mimeType = mimeType(path);
+        if (null == mimeType) {
+            return null;
+        }
+
+        final String relativePath = path.substring(STAGE_PREFIX.length());
+        final InputStream data;
+        final long length;
+        final ByteBuffer buffer = preloaded.get(relativePath);
+        if (null != buffer) {
+            data = new ByteBufferInputStream(buffer.duplicate());
+            length = buffer.capacity();
+        } else {
+            final File file = new File(dir, relativePath);
+            if (!file.isFile()) {
+                return null;
+            }
+            try {
+                data = new FileInputStream(file);
+            } catch (final IOException e) {
+                return null;
+            }
+            length = file.length();
+        }
+
+        final Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Length", String.valueOf(length));
+        headers.put("Access-Control-Allow-Origin", "*");
+        // 带版本参数的资源随外观版本更新，否则每次都需要重新验证
+        headers.put("Cache-Control", null != uri.getQueryParameter("v") ? "public, max-age=31536000, immutable" : "no-cache");
+        final String encoding = mimeType.startsWith("text/") || mimeType.startsWith("application/") ? "UTF-8" : null;
+        return new WebResourceResponse(mimeType, encoding, 200, "OK", headers, data);
+    }
+
+    private static String mimeType(final String name) {
+        final int dot = name.lastIndexOf('.');
+        if (0 > dot || name.lastIndexOf('/') > dot) {
+            return null;
+        }
+        return MIME_TYPES.get(name.substring(dot + 1).toLowerCase());
+    }
+
+    private static String relativePath(final File dir, final File file) {
+        return file.getAbsolutePath().substring(dir.getAbsolutePath().length() + 1).replace(File.separatorChar, '/');
+    }
+
+    static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.blankj.utilcode.util.StringUtils;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import mobile.Mobile;
+
+/**
+ * 启动耗时追踪.
+ * <p>
+ * 用单调时钟记录启动各阶段的耗时，首个页面加载完成时把本次启动的总耗时和各阶段耗时写入工作空间 temp/startup.trace。
+ * 该文件是固定大小的环形记录文件，只保留最近 {@value #CAPACITY} 次启动，可以据此统计冷启动和热启动耗时的 p50/p95，
+ * 判断某个版本是否导致启动变慢。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+final class StartupTracer {
+
+    /**
+     * 追踪的启动阶段，序号即记录中的位置，只能在末尾追加.
+     */
+    enum Span {
+        BOOT_ACTIVITY, MAIN_ACTIVITY, APPEARANCE, KERNEL_BOOT, KERNEL_WAIT, PAGE_LOAD
+    }
+
+    private static final String TRACE_FILE = "startup.trace";
+    private static final int MAGIC = 0x53595354; // SYST
+    private static final int VERSION = 1;
+    private static final int CAPACITY = 256;
+    private static final int HEADER_SIZE = 16;
+    private static final int MAX_SPANS = 8;
+    private static final int RECORD_SIZE = 8 + 4 + 4 + MAX_SPANS * 4;
+
+    private static final long[] begins = new long[Span.values().length];
+    private static final long[] durations = new long[Span.values().length];
+    private static long sessionStart;
+    private static boolean cold = true;
+
+    private StartupTracer() {
+    }
+
+    /**
+     * 主界面创建时调用，标记本次启动是否为冷启动（进程内首次创建主界面）.
+     */
+    static synchronized void session(final boolean coldStart) {
+        cold = coldStart;
+        if (0 == sessionStart) {
+            sessionStart = SystemClock.elapsedRealtime();
+        }
+    }
+
+    static synchronized void begin(final Span span) {
+        final long now = SystemClock.elapsedRealtime();
+        begins[span.ordinal()] = now;
+        if (0 == sessionStart) {
+            sessionStart = now;
+        }
+    }
+
+    static synchronized void end(final Span span) {
+        final long begin = begins[span.ordinal()];
+        if (0 < begin && 0 == durations[span.ordinal()]) {
+            durations[span.ordinal()] = Math.max(1, SystemClock.elapsedRealtime() - begin);
+        }
+    }
+
+    /**
+     * 首个页面加载完成时调用，结束本次启动并在后台持久化.
+     */
+    static void finish() {
+        final boolean coldStart;
+        final long total;
+        final long[] spans;
+        synchronized (StartupTracer.class) {
+            if (0 == sessionStart) {
+                return;
+            }
+            coldStart = cold;
+            total = SystemClock.elapsedRealtime() - (coldStart ? Process.getStartElapsedRealtime() : sessionStart);
+            spans = durations.clone();
+            sessionStart = 0;
+            Arrays.fill(begins, 0);
+            Arrays.fill(durations, 0);
+        }
+
+        new Thread(() -> {
+            try {
+                final File file = traceFile();
+                if (null != file) {
+                    append(file, System.currentTimeMillis(), coldStart, total, spans);
+                }
+            } catch (final Exception e) {
+                Utils.logError("boot", "write startup trace failed", e);
+            }
+        }, "StartupTracer").start();
+    }
+
+    /**
+     * 统计已记录的冷启动、热启动总耗时和各阶段耗时的 p50/p95（毫秒）.
+     */
+    static JSONObject stats() throws Exception {
+        final List<Long> coldTotals = new ArrayList<>();
+        final List<Long> warmTotals = new ArrayList<>();
+        final List<List<Long>> spanDurations = new ArrayList<>();
+        for (int i = 0; i < Span.values().length; i++) {
+            spanDurations.add(new ArrayList<>());
+        }
+
+        final File file = traceFile();
+        if (null != file && file.exists()) {
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                if (MAGIC == raf.readInt() && VERSION == raf.readShort()) {
+                    raf.readShort();
+                    final int count = Math.min(raf.readInt(), CAPACITY);
+                    for (int i = 0; i < count; i++) {
+                        raf.seek(HEADER_SIZE + (long) i * RECORD_SIZE + 8);
+                        final boolean coldStart = 1 == (raf.readInt() & 1);
+                        (coldStart ? coldTotals : warmTotals).add((long) raf.readInt());
+                        for (int s = 0; s < Span.values().length; s++) {
+                            final int d = raf.readInt();
+                            if (0 < d) {
+                                spanDurations.get(s).add((long) d);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        final JSONObject spans = new JSONObject();
+        for (final Span span : Span.values()) {
+            spans.put(span.name(), percentiles(spanDurations.get(span.ordinal())));
+        }
+        return new JSONObject().put("cold", percentiles(coldTotals)).put("warm", percentiles(warmTotals))
+                .put("spans", spans);
+    }
+
+    private static JSONObject percentiles(final List<Long> values) throws Exception {
+        Collections.sort(values);
+        final JSONObject ret = new JSONObject().put("count", values.size());
+        if (!values.isEmpty()) {
+            ret.put("p50", percentile(values, 50)).put("p95", percentile(values, 95));
+        }
+        return ret;
+    }
+
+    private static long percentile(final List<Long> sorted, final int p) {
+        final int rank = (int) Math.ceil(p / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private static synchronized void append(final File file, final long time, final boolean coldStart,
+                                            final long total, final long[] spans) throws IOException {
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            int count = 0;
+            if (HEADER_SIZE <= raf.length() && MAGIC == raf.readInt() && VERSION == raf.readShort()) {
+                raf.readShort();
+                count = raf.readInt();
+            } else {
+                raf.setLength(0);
+            }
+
+            raf.seek(HEADER_SIZE + (long) (count % CAPACITY) * RECORD_SIZE);
+            raf.writeLong(time);
+            raf.writeInt(coldStart ? 1 : 0);
+            raf.writeInt((int) Math.min(Integer.MAX_VALUE, total));
+            for (int i = 0; i < MAX_SPANS; i++) {
+                raf.writeInt(i < spans.length ? (int) Math.min(Integer.MAX_VALUE, spans[i]) : 0);
+            }
+
+            raf.seek(0);
+            raf.writeInt(MAGIC);
+            raf.writeShort(VERSION);
+            raf.writeShort(CAPACITY);
+            raf.writeInt(count + 1);
+            raf.writeInt(0);
+        }
+    }
+
+    private static File traceFile() {
+        final String workspacePath = Mobile.getCurrentWorkspacePath();
+        if (StringUtils.isEmpty(workspacePath)) {
+            return null;
+        }
+        return new File(workspacePath, "temp/" + TRACE_FILE);
+    }
+}
@@ -20,8 +20,6 @@ package org.b3log.siyuan;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
 import android.content.res.Configuration;
 import android.net.ConnectivityManager;
 import android.net.LinkAddress;
@@ -46,13 +44,8 @@ import androidx.browser.customtabs.CustomTabsIntent;
 
 import com.blankj.utilcode.util.KeyboardUtils;
 import com.blankj.utilcode.util.StringUtils;
-import com.blankj.utilcode.util.TimeUtils;
 import com.blankj.utilcode.util.ToastUtils;
 
-import org.apache.commons.io.FileUtils;
-
-import java.io.File;
-import java.io.FileWriter;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
@@ -67,14 +60,12 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
-import mobile.Mobile;
-
 /**
  * 工具类.
  *
  * @author <a href="https://88250.b3log.org">Liang Ding</a>
  * @author <a href="https://github.com/wwxiaoqi">Jane Haring</a>
- * @version 1.5.0.7, Jul 20, 2026
+ * @version 1.5.3.0, Oct 17, 2026
  * @since 1.0.0
  */
 public final class Utils {
@@ -157,24 +148,6 @@ public final class Utils {
         return null != url && url.contains("/stage/build/desktop/");
     }
 
-    public static String getChannel(final PackageManager pm) {
-        // Privacy policy solicitation will no longer pop up when Android starts for the first time
-        // https://github.com/siyuan-note/siyuan/issues/10348
-        ApplicationInfo applicationInfo;
-        try {
-            applicationInfo = pm.getApplicationInfo(BuildConfig.APPLICATION_ID, PackageManager.GET_META_DATA);
-        } catch (PackageManager.NameNotFoundException e) {
-            throw new RuntimeException(e);
-        }
-
-        // 从配置清单获取 CHANNEL 的值，用于判断是哪个渠道包
-        return applicationInfo.metaData.getString("CHANNEL");
-    }
-
-    public static boolean isHuaweiChannel(final PackageManager pm) {
-        return "huawei".equals(getChannel(pm));
-    }
-
     public static void setWebViewFocusable(final WebView webView, final boolean focusable) {
         // 禁止 WebView 获取焦点以防止自动弹出软键盘，软键盘弹出由前端控制
         // Improve soft keyboard toolbar pop-up https://github.com/siyuan-note/siyuan/issues/16548
@@ -238,14 +211,6 @@ public final class Utils {
         });
     }
 
-    public static void unzipAsset(final String appZipPath, final String targetDirectory) {
-        try {
-            Mobile.unzip(appZipPath, targetDirectory);
-        } catch (final Exception e) {
-            Utils.logError("boot", "unzip asset [from=" + appZipPath + ", to=" + targetDirectory + "] failed", e);
-        }
-    }
-
     public static String getLANIPAddressList(final Context context) {
         final List<String> list = new ArrayList<>();
         try {
@@ -341,92 +306,17 @@ public final class Utils {
     }
 
     public static void logError(final String tag, final String msg, final Throwable e) {
-        synchronized (Utils.class) {
-            if (null != e) {
-                Log.e(tag, msg, e);
-            } else {
-                Log.e(tag, msg);
-            }
-            try {
-                final String workspacePath = Mobile.getCurrentWorkspacePath();
-                if (StringUtils.isEmpty(workspacePath)) {
-                    return;
-                }
-
-                final String mobileLogPath = workspacePath + "/temp/mobile.log";
-                final File logFile = new File(mobileLogPath);
-                if (logFile.exists() && 1024 * 1024 * 8 < logFile.length()) {
-                    FileUtils.deleteQuietly(logFile);
-                }
-
-                final FileWriter writer = new FileWriter(logFile, true);
-                final String time = TimeUtils.millis2String(System.currentTimeMillis(), "yyyy-MM-dd HH:mm:ss");
-                writer.write("E " + time + " " + tag + " " + msg + "\n");
-                if (null != e) {
-                    writer.write(Log.getStackTraceString(e) + "\n");
-                }
-                writer.flush();
-                writer.close();
-            } catch (final Exception ex) {
-                Log.e("logging", "Write mobile log failed", ex);
-            }
+        if (null != e) {
+            Log.e(tag, msg, e);
+        } else {
+            Log.e(tag, msg);
         }
+        MobileLog.log('E', tag, msg, e);
     }
 
     public static void logInfo(final String tag, final String msg) {
-        synchronized (Utils.class) {
-            Log.i(tag, msg);
-            try {
-                final String workspacePath = Mobile.getCurrentWorkspacePath();
-                if (StringUtils.isEmpty(workspacePath)) {
-                    return;
-                }
-
-                final String mobileLogPath = workspacePath + "/temp/mobile.log";
-                final File logFile = new File(mobileLogPath);
-                if (logFile.exists() && 1024 * 1024 * 8 < logFile.length()) {
-                    FileUtils.deleteQuietly(logFile);
-                }
-
-                final FileWriter writer = new FileWriter(logFile, true);
-                final String time = TimeUtils.millis2String(System.currentTimeMillis(), "yyyy-MM-dd HH:mm:ss");
-                writer.write("I " + time + " " + tag + " " + msg + "\n");
-                writer.flush();
-                writer.close();
-            } catch (final Exception ex) {
-                Log.e("logging", "Write mobile log failed", ex);
-            }
-        }
-    }
-
-    public static String formatInputConfiguration(final Configuration configuration) {
-        return "keyboard [" + configuration.keyboard + "], keyboard hidden [" + configuration.keyboardHidden
-                + "], hard keyboard hidden [" + configuration.hardKeyboardHidden + "], navigation ["
-                + configuration.navigation + "], navigation hidden [" + configuration.navigationHidden
-                + "], touchscreen [" + configuration.touchscreen + "], ui mode [0x"
-                + Integer.toHexString(configuration.uiMode) + "], screen layout [0x"
-                + Integer.toHexString(configuration.screenLayout) + "]";
-    }
-
-    /**
-     * Checks if the current package name contains ".debug" and if debug mode is enabled.
-     *
-     * @param context The Android context used to retrieve the package information.
-     * @return true if the package name contains ".debug" and debug mode is enabled, false otherwise.
-     */
-    public static boolean isDebugPackageAndMode(Context context) {
-        PackageManager packageManager = context.getPackageManager();
-        ApplicationInfo appInfo = null;
-        try {
-            appInfo = packageManager.getApplicationInfo(context.getPackageName(), 0);
-        } catch (PackageManager.NameNotFoundException e) {
-            e.printStackTrace();
-        }
-
-        // Check if the package name contains ".debug"
-        boolean isDebugPackage = context.getPackageName() != null && context.getPackageName().contains(".debug");
-        boolean isDebugMode = appInfo != null && (appInfo.flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
-        return isDebugPackage && isDebugMode;
+        Log.i(tag, msg);
+        MobileLog.log('I', tag, msg, null);
     }
 
     /**
@@ -0,0 +1,80 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package mobile;
+
+/**
+ * 单元测试使用的内核桩.
+ * <p>
+ * 替换内核 aar 中的 mobile.Mobile（测试类在类路径上优先），不加载原生库。
+ * 只实现启动路径上用到的方法，{@link #startKernel} 立即进入伺服状态。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+public abstract class Mobile {
+
+    private static volatile boolean serving;
+    private static volatile String workspacePath = "";
+
+    private Mobile() {
+    }
+
+    public static void startKernel(final String container, final String appDir, final String workspaceBaseDir,
+                                   final String timezoneID, final String localIPs, final String lang, final String osVer) {
+        serving = true;
+    }
+
+    public static boolean isHttpServing() {
+        return serving;
+    }
+
+    public static String getCurrentWorkspacePath() {
+        return workspacePath;
+    }
+
+    public static String getAssetAbsPath(final String relativePath) {
+        return workspacePath + "/data/" + relativePath;
+    }
+
+    public static String getMimeTypeByExt(final String filePath) {
+        final String name = filePath.toLowerCase();
+        if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        return "";
+    }
+
+    /**
+     * 停止伺服，仅测试使用.
+     */
+    public static void stop() {
+        serving = false;
+    }
+
+    /**
+     * 设置当前工作空间，仅测试使用.
+     */
+    public static void setWorkspacePath(final String path) {
+        workspacePath = null == path ? "" : path;
+    }
+}
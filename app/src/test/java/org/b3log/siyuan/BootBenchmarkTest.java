@@ -0,0 +1,192 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import mobile.Mobile;
+
+/**
+ * 启动路径基准测试.
+ * <p>
+ * 在 JVM 上通过 Robolectric 重复执行启动路径上的各个环节，内核为 src/test 下的 {@link Mobile} 桩，
+ * 每项输出吞吐（ops/s）和耗时分布（p50/p99/max），用于发布前对比不同版本的启动性能。
+ * 外观解压需要构建时打包的 app.zip，不存在时跳过。测量次数通过 -PbootBenchmark.iterations 指定。
+ * </p>
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)
+public class BootBenchmarkTest {
+
+    private static final int WARMUP = 3;
+    private static final int MAX_EXTRACT_ITERATIONS = 5;
+    // 模拟内核从启动到开始伺服的耗时
+    private static final long KERNEL_BOOT_MILLIS = 20;
+
+    private Context context;
+    private File scratch;
+    private int iterations;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        scratch = new File(context.getCacheDir(), "boot-benchmark");
+        FileUtils.deleteQuietly(scratch);
+        iterations = Math.max(1, Integer.getInteger("bootBenchmark.iterations", 20));
+        Mobile.stop();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(scratch);
+        Mobile.stop();
+    }
+
+    @Test
+    public void needExtract() throws Exception {
+        measure("needExtract", iterations, () -> assertTrue(new AppearanceExtractor(context.getAssets(), scratch).needExtract()));
+    }
+
+    @Test
+    public void extract() throws Exception {
+        if (!hasAsset(AppearanceExtractor.ASSET_ZIP)) {
+            System.out.println("boot benchmark: skip extract, " + AppearanceExtractor.ASSET_ZIP + " is not packaged");
+            return;
+        }
+
+        final AppearanceExtractor.Progress noProgress = (path, done, total) -> {
+        };
+        final int n = Math.min(iterations, MAX_EXTRACT_ITERATIONS);
+        measure("extractFull", n, () -> {
+            FileUtils.deleteQuietly(scratch);
+            new AppearanceExtractor(context.getAssets(), scratch).extract(true, noProgress);
+        });
+        measure("extractUnchanged", n, () -> new AppearanceExtractor(context.getAssets(), scratch).extract(false, noProgress));
+        measure("needExtractInstalled", iterations, () -> assertFalse(new AppearanceExtractor(context.getAssets(), scratch).needExtract()));
+    }
+
+    @Test
+    public void lanIPAddressList() throws Exception {
+        measure("lanIPAddressList", iterations, () -> assertTrue(Utils.getLANIPAddressList(context).endsWith("127.0.0.1")));
+    }
+
+    @Test
+    public void language() throws Exception {
+        measure("language", iterations, () -> assertFalse(Utils.getLanguage().isEmpty()));
+    }
+
+    /**
+     * 和主界面相同的阶段依赖关系，内核阶段在单独线程上启动内核桩，测量调度和就绪探测的开销.
+     */
+    @Test
+    public void bootSequence() throws Exception {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        final BootScheduler.Task noop = () -> {
+        };
+        measure("bootSequence", iterations, () -> {
+            Mobile.stop();
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            final AtomicReference<CompletableFuture<Void>> ready = new AtomicReference<>();
+            final CompletableFuture<Void> stages = new BootScheduler(mainHandler)
+                    .background("httpServer", noop)
+                    .background("appearance", () -> new AppearanceExtractor(context.getAssets(), scratch).needExtract())
+                    .optional("stageAssets", noop, "appearance")
+                    .optional("proxyCache", noop)
+                    .optional("thumbnails", noop)
+                    .main("webView", noop)
+                    .background("kernel", () -> new Thread(() -> {
+                        try {
+                            Thread.sleep(KERNEL_BOOT_MILLIS);
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        Mobile.startKernel("android", scratch.getAbsolutePath(), scratch.getAbsolutePath(),
+                                TimeZone.getDefault().getID(), Utils.getLANIPAddressList(context), Utils.getLanguage(), "");
+                    }, "KernelBoot").start(), "httpServer", "appearance")
+                    .main("kernelReady", () -> ready.set(KernelReadiness.ready()), "kernel", "webView")
+                    .optional("interceptRules", noop, "kernelReady")
+                    .start((stage, e) -> failure.compareAndSet(null, e));
+            // 主线程阶段投递到 Robolectric 的主线程队列上，需要在测试线程上执行
+            while (!stages.isDone()) {
+                shadowOf(Looper.getMainLooper()).idle();
+                Thread.yield();
+            }
+            shadowOf(Looper.getMainLooper()).idle();
+            if (null != failure.get()) {
+                throw new AssertionError("boot stage failed", failure.get());
+            }
+            ready.get().join();
+        });
+    }
+
+    private boolean hasAsset(final String name) {
+        try (final InputStream ignored = context.getAssets().open(name)) {
+            return true;
+        } catch (final Exception e) {
+            return false;
+        }
+    }
+
+    private static void measure(final String name, final int iterations, final BootScheduler.Task task) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        final long[] nanos = new long[iterations];
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            final long start = System.nanoTime();
+            task.run();
+            nanos[i] = System.nanoTime() - start;
+            total += nanos[i];
+        }
+        Arrays.sort(nanos);
+
+        System.out.println(String.format(Locale.ROOT, "boot benchmark: %-22s n=%-5d %12.1f ops/s  p50 %9.3f ms  p99 %9.3f ms  max %9.3f ms",
+                name, iterations, 0 < total ? iterations * 1e9 / total : 0,
+                nanos[(iterations - 1) / 2] / 1e6, nanos[(int) Math.ceil(iterations * 0.99) - 1] / 1e6, nanos[iterations - 1] / 1e6));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * SiYuan - From thought to insight, with agents
+ * Copyright (c) 2020-present, b3log.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.siyuan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.webkit.WebResourceResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link ProxyCache} 单元测试.
+ *
+ * @author <a href="https://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 17, 2026
+ * @since 3.8.2
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)
+public class ProxyCacheTest {
+
+    private static final String URL = "https://mmbiz.qpic.cn/a.png";
+    private static final String OTHER_URL = "https://mmbiz.qpic.cn/b.png";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = folder.newFolder("proxy");
+        ProxyCache.open(cacheDir);
+    }
+
+    @Test
+    public void replaceWithSameContent() throws Exception {
+        final byte[] content = "same content".getBytes(StandardCharsets.UTF_8);
+        cache(URL, content);
+        final ProxyCache.Entry first = ProxyCache.lookup(URL);
+        assertNotNull(first);
+
+        // 同一地址重新加载到相同内容，共用的内容文件不能被删除
+        cache(URL, content);
+        final ProxyCache.Entry second = ProxyCache.lookup(URL);
+        assertNotNull(second);
+        assertEquals(first.hash, second.hash);
+        assertTrue(blob(second.hash).isFile());
+        assertArrayEquals(content, read(ProxyCache.serve(second)));
+    }
+
+    @Test
+    public void replaceSharedContent() throws Exception {
+        final byte[] shared = "shared content".getBytes(StandardCharsets.UTF_8);
+        cache(URL, shared);
+        cache(OTHER_URL, shared);
+        final String sharedHash = ProxyCache.lookup(URL).hash;
+
+        // 另一个地址仍然引用旧内容
+        cache(URL, "new content".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(sharedHash, ProxyCache.lookup(URL).hash);
+        assertTrue(blob(sharedHash).isFile());
+        assertArrayEquals(shared, read(ProxyCache.serve(ProxyCache.lookup(OTHER_URL))));
+    }
+
+    @Test
+    public void replaceWithDifferentContent() throws Exception {
+        cache(URL, "old content".getBytes(StandardCharsets.UTF_8));
+        final String oldHash = ProxyCache.lookup(URL).hash;
+
+        final byte[] content = "new content".getBytes(StandardCharsets.UTF_8);
+        cache(URL, content);
+        assertFalse(blob(oldHash).exists());
+        assertArrayEquals(content, read(ProxyCache.serve(ProxyCache.lookup(URL))));
+    }
+
+    @Test
+    public void deleteOrphanBlobsOnOpen() throws Exception {
+        final File dir = folder.newFolder("orphans");
+        final byte[] content = "indexed content".getBytes(StandardCharsets.UTF_8);
+        final String indexed = "aa00000000000000000000000000000000000000000000000000000000000001";
+        final String orphan = "aa00000000000000000000000000000000000000000000000000000000000002";
+        FileUtils.writeByteArrayToFile(blob(dir, indexed), content);
+        // 索引保存前进程退出留下的内容文件
+        FileUtils.writeByteArrayToFile(blob(dir, orphan), "orphan content".getBytes(StandardCharsets.UTF_8));
+        FileUtils.writeStringToFile(new File(dir, "index.json"), new JSONArray().put(new JSONObject()
+                .put("url", URL).put("hash", indexed).put("size", content.length).put("mimeType", "image/png")
+                .put("expires", System.currentTimeMillis() + 60 * 1000)).toString(), StandardCharsets.UTF_8);
+
+        ProxyCache.open(dir);
+        assertFalse(blob(dir, orphan).exists());
+        assertTrue(blob(dir, indexed).isFile());
+        assertArrayEquals(content, read(ProxyCache.serve(ProxyCache.lookup(URL))));
+    }
+
+    private static void cache(final String url, final byte[] content) throws Exception {
+        try (final InputStream in = ProxyCache.tee(new ByteArrayInputStream(content), url, content.length, "image/png", null,
+                null, null, System.currentTimeMillis() + 60 * 1000)) {
+            IOUtils.toByteArray(in);
+        }
+    }
+
+    private File blob(final String hash) {
+        return blob(cacheDir, hash);
+    }
+
+    private static File blob(final File dir, final String hash) {
+        return new File(new File(new File(dir, "blobs"), hash.substring(0, 2)), hash);
+    }
+
+    private static byte[] read(final WebResourceResponse response) throws Exception {
+        assertNotNull(response);
+        try (final InputStream in = response.getData()) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+}